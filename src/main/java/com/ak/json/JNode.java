@@ -98,6 +98,25 @@ public interface JNode extends Iterable<JNode> {
    */
   <V> V getValue(Class<V> type);
 
+  /**
+   * Return value of JValueNode as long without boxing. Floating point value is truncated,
+   * string value is parsed.
+   * @return long
+   */
+  long getLong();
+
+  /**
+   * Return value of JValueNode as double without boxing. String value is parsed.
+   * @return double
+   */
+  double getDouble();
+
+  /**
+   * Return value of JValueNode as boolean. String value is parsed.
+   * @return boolean
+   */
+  boolean getBoolean();
+
   /**
    * Return parent node of this node in node tree.
    * @return JNode
@@ -128,11 +147,27 @@ public interface JNode extends Iterable<JNode> {
   Iterator<JNode> iterator();
 
   /**
-   * Returns set of all children of composite (Object or Array) node.
+   * Returns set of all children of composite (Object or Array) node. Children of Object node
+   * are returned as read only view in order of properties, the view is not a copy.
    * @return List&lt;JNode&gt;
    */
   List<JNode> getChildren();
 
+  /**
+   * Returns child of composite node at given position: element of Array node or property of
+   * Object node in order of properties.
+   * @param index position of child.
+   * @return JNode
+   * @throws IndexOutOfBoundsException if there is no child at the position.
+   */
+  JNode getNodeAt(int index);
+
+  /**
+   * Returns number of children of composite node, 0 for Value node.
+   * @return int
+   */
+  int childCount();
+
   /**
    * Return copy of this object, detached from node tree.
    * @return JNode
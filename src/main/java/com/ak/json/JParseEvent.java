@@ -61,5 +61,10 @@ public enum JParseEvent {
   /**
    * Parser reader fires the event DELIMITER when has meet ',' symbol in a parsing stream.
    */
-  DELIMITER
+  DELIMITER,
+
+  /**
+   * Feed parser returns NEED_MORE_INPUT when all fed bytes are consumed and the next token is not complete yet.
+   */
+  NEED_MORE_INPUT
 }
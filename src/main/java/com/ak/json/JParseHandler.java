@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json;
+
+/**
+ * JParseHandler receives events of JSON document from JParser (push style
+ * parsing). JParser builds JNode tree with its own implementation of the
+ * interface; an application can supply another implementation to process
+ * document without building the tree.
+ * <p>
+ * Callbacks are called in the document order. A member of object is reported
+ * by fieldName followed by callback(s) of its value. Strings are passed as is,
+ * escape sequences are not converted.
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+public interface JParseHandler {
+
+  /**
+   * Parser has met '{' symbol.
+   * @throws JParserException to stop parsing.
+   */
+  void startObject() throws JParserException;
+
+  /**
+   * Parser has met '}' symbol.
+   * @throws JParserException to stop parsing.
+   */
+  void endObject() throws JParserException;
+
+  /**
+   * Parser has met '[' symbol.
+   * @throws JParserException to stop parsing.
+   */
+  void startArray() throws JParserException;
+
+  /**
+   * Parser has met ']' symbol.
+   * @throws JParserException to stop parsing.
+   */
+  void endArray() throws JParserException;
+
+  /**
+   * Parser has met name of object member.
+   * @param name field name.
+   * @throws JParserException to stop parsing.
+   */
+  void fieldName(String name) throws JParserException;
+
+  /**
+   * Parser has met string value.
+   * @param value content of the string without quotes.
+   * @throws JParserException to stop parsing.
+   */
+  void value(String value) throws JParserException;
+
+  /**
+   * Parser has met integer number that fits to long.
+   * @param value the number.
+   * @throws JParserException to stop parsing.
+   */
+  void value(long value) throws JParserException;
+
+  /**
+   * Parser has met number with fraction or exponent, or integer number too big for long.
+   * @param value the number.
+   * @throws JParserException to stop parsing.
+   */
+  void value(double value) throws JParserException;
+
+  /**
+   * Parser has met true or false literal.
+   * @param value the literal.
+   * @throws JParserException to stop parsing.
+   */
+  void value(boolean value) throws JParserException;
+
+  /**
+   * Parser has met null literal.
+   * @throws JParserException to stop parsing.
+   */
+  void nullValue() throws JParserException;
+}
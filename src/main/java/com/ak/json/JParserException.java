@@ -27,10 +27,14 @@ public class JParserException extends Exception {
   /** */
   private static final long serialVersionUID = -898932151669161747L;
 
+  /** Offset of the wrong symbol in the document or -1 if it is unknown. */
+  private final long offset;
+
   /**
    * Default constructor.
    */
   public JParserException() {
+    this.offset = -1;
   }
 
   /**
@@ -39,6 +43,17 @@ public class JParserException extends Exception {
    */
   public JParserException(final String message) {
     super(message);
+    this.offset = -1;
+  }
+
+  /**
+   * Constructor.
+   * @param message description of the exception.
+   * @param offset index of the first symbol of the wrong token in the document.
+   */
+  public JParserException(final String message, final long offset) {
+    super(message);
+    this.offset = offset;
   }
 
   /**
@@ -46,6 +61,7 @@ public class JParserException extends Exception {
    */
   public JParserException(final Throwable cause) {
     super(cause);
+    this.offset = -1;
   }
 
   /**
@@ -54,6 +70,16 @@ public class JParserException extends Exception {
    */
   public JParserException(final String message, final Throwable cause) {
     super(message, cause);
+    this.offset = -1;
+  }
+
+  /**
+   * Returns offset of the wrong symbol in the document: index of symbol (char
+   * for text, byte for UTF-8 input) where the wrong token starts.
+   * @return long or -1 if offset is unknown.
+   */
+  public long getOffset() {
+    return offset;
   }
 
  }
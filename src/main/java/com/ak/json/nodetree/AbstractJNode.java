@@ -34,9 +34,12 @@ import com.ak.json.JNode;
 public abstract class AbstractJNode implements JNode, JInstrumentalNode, Cloneable {
   /** Parent node in node tree. */
   protected JInstrumentalNode parent;
-  /** Key of given node. Can be null for root node or elements of ARRAY node.
+  /** Key of given node. Null for root node and elements of ARRAY node: key of element is its
+   *  position in the array and is computed by {@link #getKey()}.
    *  TODO avoid duplication of this field (Map of JObjectNode already keep it) although it convenient for parsing and transform. */
   private String key;
+  /** Position of element in parent ARRAY node, kept by the array; -1 for other nodes. */
+  int position = -1;
   /** Type of the node. */
   protected JNodeType type;
   /** Empty set. */
@@ -78,6 +81,28 @@ public abstract class AbstractJNode implements JNode, JInstrumentalNode, Cloneab
     throw new RuntimeException("Try to get value from node type " + this.type);
   }
 
+  @Override
+  public long getLong() {
+    throw new RuntimeException("Try to get value from node type " + this.type);
+  }
+
+  @Override
+  public double getDouble() {
+    throw new RuntimeException("Try to get value from node type " + this.type);
+  }
+
+  @Override
+  public boolean getBoolean() {
+    throw new RuntimeException("Try to get value from node type " + this.type);
+  }
+
+  /**
+   * Called before children of the node are accessed. Node that creates its children on demand
+   * (for example lazy node of parser) overrides the method.
+   */
+  protected void expand() {
+  }
+
   @Override
   public JNode getParent() {
     return parent;
@@ -95,7 +120,7 @@ public abstract class AbstractJNode implements JNode, JInstrumentalNode, Cloneab
   @Override
   public String [] getPath() {
     List<String> path = new ArrayList<String>();
-    path.add(0, key);
+    path.add(0, getKey());
     JNode parnt = parent;
     while (parnt.getParent() != null) {
       path.add(0, ((JInstrumentalNode) parnt).getKey());
@@ -114,6 +139,16 @@ public abstract class AbstractJNode implements JNode, JInstrumentalNode, Cloneab
     return EMPTY_LIST;
   }
 
+  @Override
+  public JNode getNodeAt(final int index) {
+    throw new IndexOutOfBoundsException("Try to get node " + index + " from " + this.type + " node.");
+  }
+
+  @Override
+  public int childCount() {
+    return 0;
+  }
+
   @Override
   public Set<String> fieldNames() {
     return EMPTY_SET;
@@ -122,8 +157,16 @@ public abstract class AbstractJNode implements JNode, JInstrumentalNode, Cloneab
   @Override
   public abstract JNode clone();
 
+  /**
+   * Returns key of the node. Element of array has no stored key, its key is its position that
+   * the array keeps up to date on insertion and removal.
+   * @return String
+   */
   @Override
   public String getKey() {
+    if (key == null && parent instanceof JArrayNode) {
+      return ((JArrayNode) parent).keyOf(this);
+    }
     return key;
   }
 
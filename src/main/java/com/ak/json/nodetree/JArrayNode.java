@@ -17,21 +17,51 @@
 
 package com.ak.json.nodetree;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.RandomAccess;
 
 import com.ak.json.JInstrumentalNode;
 import com.ak.json.JNode;
 
 /**
  * Class JArrayNode represents JSON ARRAY element.
+ * <p>
+ * Array of integer numbers, floating point numbers or booleans that is filled by
+ * {@link #addLong(long)}, {@link #addDouble(double)} or {@link #addBoolean(boolean)} (parser does
+ * it) keeps its elements in long [], double [] or BitSet without nodes. The primitive array is
+ * returned by {@link #getLongArray()}, {@link #getDoubleArray()} and {@link #getBooleanArray()};
+ * {@link #toJson()}, {@link #equals(Object)} and {@link #hashCode()} read it without keeping
+ * nodes. An element accessed as node ({@link #getNode(Object)}, {@link #getNodeAt(int)},
+ * {@link #iterator()}, {@link #getChildren()}) is created once and kept beside the primitive array,
+ * so reading does not change storage of the array. Array turns to array of nodes when value of a
+ * node handed out is changed, an element of other type or a node is added or an element is
+ * removed, so changes of a node handed out are changes of the array.
  * @author krasnop@bellsouth.net (Alexei Krasnopolski)
  *
  */
 public class JArrayNode extends AbstractJNode implements JNode {
-  /** Container for array elements. */
+  /** Capacity of primitive array at first insertion. */
+  private static final int INITIAL_CAPACITY = 8;
+
+  /** Container for array elements; null while elements are kept in primitive array. */
   private List<JNode> elements;
+  /** Type of primitive elements: LONG, DOUBLE or BOOLEAN; null if elements are nodes. */
+  private JValueType primitiveType;
+  /** Integer elements. */
+  private long [] longs;
+  /** Floating point elements. */
+  private double [] doubles;
+  /** Boolean elements. */
+  private BitSet booleans;
+  /** Number of primitive elements. */
+  private int count;
+  /** Nodes of primitive elements handed out for reading; null before the first one. */
+  private JNode [] views;
 
   /**
    * Default Constructor for detached node.
@@ -58,48 +88,385 @@ public class JArrayNode extends AbstractJNode implements JNode {
     type = JNodeType.ARRAY;
   }
 
+  /**
+   * Returns container of elements. Node that creates its children on demand does it here.
+   * Primitive elements are replaced by nodes.
+   * @return container
+   */
+  private List<JNode> elements() {
+    if (isPrimitive()) {
+      List<JNode> nodes = new ArrayList<JNode>(count);
+      for (int i = 0; i < count; i++) {
+        JNode view = (views != null && i < views.length) ? views[i] : null;
+        nodes.add((view == null) ? element(i) : view);
+      }
+      // nodes of primitive elements got their positions when they were created
+      primitiveType = null;
+      longs = null;
+      doubles = null;
+      booleans = null;
+      views = null;
+      count = 0;
+      elements = nodes;
+    }
+    return elements;
+  }
+
+  /**
+   * Check if elements are kept in primitive array.
+   * @return boolean
+   */
+  private boolean isPrimitive() {
+    expand();
+    return primitiveType != null;
+  }
+
+  /**
+   * Prepare primitive array of given type for next element.
+   * @param pType type of the element.
+   * @return false if elements are kept as nodes or have other type.
+   */
+  private boolean reserve(final JValueType pType) {
+    if (primitiveType == null) {
+      if (!elements().isEmpty()) {
+        return false;
+      }
+      primitiveType = pType;
+      elements = null;
+      switch (pType) {
+        case LONG :
+          longs = new long[INITIAL_CAPACITY];
+          break;
+        case DOUBLE :
+          doubles = new double[INITIAL_CAPACITY];
+          break;
+        default :
+          booleans = new BitSet();
+          break;
+      }
+    } else if (primitiveType != pType) {
+      return false;
+    }
+    if (longs != null && count == longs.length) {
+      longs = Arrays.copyOf(longs, count * 2);
+    } else if (doubles != null && count == doubles.length) {
+      doubles = Arrays.copyOf(doubles, count * 2);
+    }
+    return true;
+  }
+
+  /**
+   * Add integer number to the end of array without creating node.
+   * @param value integer number.
+   */
+  public void addLong(final long value) {
+    if (reserve(JValueType.LONG)) {
+      longs[count++] = value;
+    } else {
+      addNode(JNumberNode.valueOf(value));
+    }
+  }
+
+  /**
+   * Add floating point number to the end of array without creating node.
+   * @param value floating point number.
+   */
+  public void addDouble(final double value) {
+    if (reserve(JValueType.DOUBLE)) {
+      doubles[count++] = value;
+    } else {
+      addNode(JNumberNode.valueOf(value));
+    }
+  }
+
+  /**
+   * Add boolean to the end of array without creating node.
+   * @param value boolean.
+   */
+  public void addBoolean(final boolean value) {
+    if (reserve(JValueType.BOOLEAN)) {
+      booleans.set(count++, value);
+    } else {
+      addNode(new JValueNode<Boolean>(Boolean.valueOf(value)));
+    }
+  }
+
+  /**
+   * Returns type of elements kept in primitive array.
+   * @return LONG, DOUBLE, BOOLEAN or null if elements are nodes.
+   */
+  public JValueType getPrimitiveType() {
+    return isPrimitive() ? primitiveType : null;
+  }
+
+  /**
+   * Fit primitive array to number of elements. Parser does it when the array is closed.
+   */
+  public void trimToSize() {
+    if (longs != null && longs.length != count) {
+      longs = Arrays.copyOf(longs, count);
+    } else if (doubles != null && doubles.length != count) {
+      doubles = Arrays.copyOf(doubles, count);
+    }
+  }
+
+  /**
+   * Returns integer elements, length of the array is number of elements. Storage of the node is
+   * returned if it is trimmed by {@link #trimToSize()}, a copy otherwise; it must not be changed.
+   * @return long [] or null if elements are not kept in array of integer numbers.
+   */
+  public long [] getLongArray() {
+    if (getPrimitiveType() != JValueType.LONG) {
+      return null;
+    }
+    return (longs.length == count) ? longs : Arrays.copyOf(longs, count);
+  }
+
+  /**
+   * Returns floating point elements, length of the array is number of elements. Storage of the
+   * node is returned if it is trimmed by {@link #trimToSize()}, a copy otherwise; it must not be
+   * changed.
+   * @return double [] or null if elements are not kept in array of floating point numbers.
+   */
+  public double [] getDoubleArray() {
+    if (getPrimitiveType() != JValueType.DOUBLE) {
+      return null;
+    }
+    return (doubles.length == count) ? doubles : Arrays.copyOf(doubles, count);
+  }
+
+  /**
+   * Returns boolean elements, number of elements is {@link #childCount()}. The set is storage of
+   * the node and is not copied; it must not be changed.
+   * @return BitSet or null if elements are not kept as booleans.
+   */
+  public BitSet getBooleanArray() {
+    return (getPrimitiveType() == JValueType.BOOLEAN) ? booleans : null;
+  }
+
+  /**
+   * Returns element at given position for reading: node of primitive element is created and is
+   * not kept by the array.
+   * @param i index of element.
+   * @return JNode
+   */
+  private JNode nodeAt(final int i) {
+    return isPrimitive() ? element(i) : elements.get(i);
+  }
+
+  /**
+   * Returns node of primitive element that is kept for following reads.
+   * @param i index of element.
+   * @return JNode
+   */
+  private JNode view(final int i) {
+    if (i < 0 || i >= count) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + count);
+    }
+    if (views == null) {
+      views = new JNode[count];
+    } else if (views.length < count) {
+      views = Arrays.copyOf(views, count);
+    }
+    if (views[i] == null) {
+      views[i] = element(i);
+    }
+    return views[i];
+  }
+
+  /**
+   * Called when value of element is changed: node of primitive element was handed out and
+   * primitive array does not keep the new value, so the array turns to array of nodes.
+   */
+  void elementChanged() {
+    if (primitiveType != null) {
+      elements();
+    }
+  }
+
+  /**
+   * Creates node of primitive element. Numbers get the same node as parser creates for them.
+   * The node has no key: its key is its position, see {@link #keyOf(JNode)}.
+   * @param i index of element.
+   * @return AbstractJNode
+   */
+  private AbstractJNode element(final int i) {
+    if (i < 0 || i >= count) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + count);
+    }
+    AbstractJNode node;
+    switch (primitiveType) {
+      case LONG :
+        node = JNumberNode.valueOf(longs[i]);
+        break;
+      case DOUBLE :
+        node = JNumberNode.valueOf(doubles[i]);
+        break;
+      default :
+        node = new JValueNode<Boolean>(Boolean.valueOf(booleans.get(i)));
+        break;
+    }
+    node.parent = this;
+    node.position = i;
+    return node;
+  }
+
   @Override
   public <T> JNode getNode(final T idx) {
-    return elements.get((Integer) idx);
+    return getNodeAt((Integer) idx);
+  }
+
+  @Override
+  public JNode getNodeAt(final int index) {
+    return isPrimitive() ? view(index) : elements.get(index);
+  }
+
+  @Override
+  public int childCount() {
+    return isPrimitive() ? count : elements.size();
   }
 
   @Override
   public <K, T extends JNode> void addNode(final K idx, final T node) {
     ((AbstractJNode) node).parent = this;
-    ((JInstrumentalNode) node).setKey(idx.toString());
-    elements.add(((Integer) idx).intValue(), node);
+    ((JInstrumentalNode) node).setKey(null);
+    int i = ((Integer) idx).intValue();
+    elements().add(i, node);
+    renumber(i);
+  }
+
+  /**
+   * Set positions of elements kept as nodes from given one to the end, as ArrayList shifts them.
+   * @param from position of first shifted element.
+   */
+  private void renumber(final int from) {
+    int size = elements.size();
+    for (int i = from; i < size; i++) {
+      JNode node = elements.get(i);
+      if (node instanceof AbstractJNode) {
+        ((AbstractJNode) node).position = i;
+      }
+    }
+  }
+
+  /**
+   * Forget position of removed element.
+   * @param node removed element.
+   */
+  private static void detach(final JNode node) {
+    if (node instanceof AbstractJNode) {
+      ((AbstractJNode) node).position = -1;
+    }
+  }
+
+  /**
+   * Returns key of element: its position in the array. Elements do not keep their keys, so keys
+   * are not stale after insertion or removal. The position is kept by element and is checked
+   * against the array; the array is not changed, so keys can be read concurrently.
+   * @param node element of the array.
+   * @return String or null if the node is not element of the array.
+   */
+  String keyOf(final JNode node) {
+    int i = indexOf(node);
+    return (i < 0) ? null : Integer.toString(i);
+  }
+
+  /**
+   * Find position of the node among elements kept as nodes or nodes of primitive elements
+   * handed out.
+   * @param node element of the array.
+   * @return position or -1 if the node is not element of the array.
+   */
+  private int indexOf(final JNode node) {
+    int p = (node instanceof AbstractJNode) ? ((AbstractJNode) node).position : -1;
+    if (isPrimitive()) {
+      return (views != null && p >= 0 && p < Math.min(views.length, count) && views[p] == node) ? p : -1;
+    }
+    return (p >= 0 && p < elements.size() && elements.get(p) == node) ? p : -1;
   }
 
   @Override
   public void addNode(final JNode node) {
-    addNode(elements.size(), node);
+    addNode(elements().size(), node);
   }
 
   @Override
   public <K> void removeNode(final K selector) {
-    elements.remove(((Integer) selector).intValue());
+    int i = ((Integer) selector).intValue();
+    detach(elements().remove(i));
+    renumber(i);
   }
 
   @Override
   public <N extends JNode> void removeNode(final N node) {
-    elements.remove(node);
+    int i = indexOf(node);
+    List<JNode> nodes = elements();
+    if (i < 0) {
+      i = nodes.indexOf(node);
+    }
+    if (i >= 0) {
+      detach(nodes.remove(i));
+      renumber(i);
+    }
   }
 
   @Override
   public Iterator<JNode> iterator() {
-    return elements.iterator();
+    return getChildren().iterator();
   }
 
+  /**
+   * Returns list of elements. The list is a view of the array: nodes of primitive elements are
+   * created on reading, removal and insertion change the array as {@link #removeNode(Object)}
+   * and {@link #addNode(Object, JNode)} do.
+   * @return List
+   */
   @Override
   public List<JNode> getChildren() {
-    return elements;
+    return new Children();
+  }
+
+  /**
+   * List of elements of the array.
+   */
+  private final class Children extends AbstractList<JNode> implements RandomAccess {
+    @Override
+    public JNode get(final int index) {
+      return getNodeAt(index);
+    }
+
+    @Override
+    public int size() {
+      return childCount();
+    }
+
+    @Override
+    public void add(final int index, final JNode node) {
+      addNode(Integer.valueOf(index), node);
+    }
+
+    @Override
+    public JNode remove(final int index) {
+      JNode node = getNodeAt(index);
+      removeNode(Integer.valueOf(index));
+      return node;
+    }
   }
 
   @Override
   public JNode clone() {
     JArrayNode copy = new JArrayNode(parent);
-    for (JNode child : elements) {
-      copy.addNode(child.clone());
+    if (isPrimitive()) {
+      copy.primitiveType = primitiveType;
+      copy.elements = null;
+      copy.count = count;
+      copy.longs = (longs == null) ? null : Arrays.copyOf(longs, count);
+      copy.doubles = (doubles == null) ? null : Arrays.copyOf(doubles, count);
+      copy.booleans = (booleans == null) ? null : (BitSet) booleans.clone();
+    } else {
+      for (JNode child : elements) {
+        copy.addNode(child.clone());
+      }
     }
     copy.setKey(getKey());
     return copy;
@@ -115,7 +482,9 @@ public class JArrayNode extends AbstractJNode implements JNode {
     StringBuffer value = new StringBuffer();
     String delimiter = "";
     value.append("[");
-    for (JNode n : elements) {
+    int size = childCount();
+    for (int i = 0; i < size; i++) {
+      JNode n = nodeAt(i);
       value.append(delimiter + indent);
       if (deep) {
         value.append(n.toString(indent + "  ", showPath, deep));
@@ -145,8 +514,9 @@ public class JArrayNode extends AbstractJNode implements JNode {
     StringBuffer value = new StringBuffer();
     String delimiter = "";
     value.append("[");
-    for (JNode n : elements) {
-      value.append(delimiter + n.toJson());
+    int size = childCount();
+    for (int i = 0; i < size; i++) {
+      value.append(delimiter + nodeAt(i).toJson());
       delimiter = ",";
     }
     value.append("]");
@@ -157,7 +527,12 @@ public class JArrayNode extends AbstractJNode implements JNode {
   public int hashCode() {
     final int prime = 31;
     int result = super.hashCode();
-    result = prime * result + ((elements == null) ? 0 : elements.hashCode());
+    int elementsHash = 1;
+    int size = childCount();
+    for (int i = 0; i < size; i++) {
+      elementsHash = prime * elementsHash + nodeAt(i).hashCode();
+    }
+    result = prime * result + elementsHash;
     return result;
   }
 
@@ -173,12 +548,14 @@ public class JArrayNode extends AbstractJNode implements JNode {
       return false;
     }
     JArrayNode other = (JArrayNode) obj;
-    if (elements == null) {
-      if (other.elements != null) {
+    int size = childCount();
+    if (size != other.childCount()) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (!nodeAt(i).equals(other.nodeAt(i))) {
         return false;
       }
-    } else if (!elements.equals(other.elements)) {
-      return false;
     }
     return true;
   }
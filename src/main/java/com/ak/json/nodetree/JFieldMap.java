@@ -0,0 +1,417 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.nodetree;
+
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import com.ak.json.JNode;
+
+/**
+ * Class JFieldMap keeps properties of JObjectNode in insertion order. Keys and values are kept
+ * in two parallel arrays, so a small object costs the map and two short arrays instead of
+ * LinkedHashMap with its table and linked entries. A key is found by linear scan while the map
+ * is small; when it grows above {@link #LINEAR_LIMIT} properties, an open addressing table of
+ * indices into the arrays is built. Removal shifts the arrays like ArrayList does; its slot is
+ * deleted from the table by backward shift and indices after it are decremented, so the table
+ * is not rebuilt.
+ * Entries of {@link #entrySet()} are created on iteration; other views do not create objects
+ * besides their iterators.
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+final class JFieldMap extends AbstractMap<String, JNode> {
+  /** Greatest size of map that is searched by linear scan. */
+  static final int LINEAR_LIMIT = 8;
+  /** Capacity of arrays at first insertion. */
+  private static final int INITIAL_CAPACITY = 4;
+  /** Arrays of empty map. */
+  private static final String [] NO_KEYS = {};
+  /** Arrays of empty map. */
+  private static final JNode [] NO_VALUES = {};
+
+  /** Keys in insertion order. */
+  private String [] keys = NO_KEYS;
+  /** Values in order of keys. */
+  private JNode [] values = NO_VALUES;
+  /** Number of properties. */
+  private int size;
+  /** Open addressing table: index of property plus 1, 0 for free slot; null for small map. */
+  private int [] table;
+  /** Number of structural modifications, for fail-fast iterators. */
+  private int modCount;
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns key of property at given position.
+   * @param i position in insertion order.
+   * @return String
+   */
+  String keyAt(final int i) {
+    return keys[i];
+  }
+
+  /**
+   * Returns value of property at given position.
+   * @param i position in insertion order.
+   * @return JNode
+   * @throws IndexOutOfBoundsException if there is no property at the position.
+   */
+  JNode valueAt(final int i) {
+    if (i >= size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+    return values[i];
+  }
+
+  /**
+   * Returns read only list view of values in insertion order.
+   * @return List
+   */
+  List<JNode> valueList() {
+    return new ValueList();
+  }
+
+  /**
+   * Find position of the key.
+   * @param key key of property.
+   * @return position or -1 if the key is absent.
+   */
+  private int indexOf(final Object key) {
+    if (!(key instanceof String)) {
+      return -1;
+    }
+    int hash = key.hashCode();
+    if (table == null) {
+      for (int i = 0; i < size; i++) {
+        String k = keys[i];
+        if (k == key || (k.hashCode() == hash && k.equals(key))) {
+          return i;
+        }
+      }
+      return -1;
+    }
+    int mask = table.length - 1;
+    for (int slot = spread(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+      String k = keys[table[slot] - 1];
+      if (k == key || (k.hashCode() == hash && k.equals(key))) {
+        return table[slot] - 1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Spread bits of hash code to lower bits used by table.
+   * @param hash hash code of key.
+   * @return int
+   */
+  private static int spread(final int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public JNode get(final Object key) {
+    int i = indexOf(key);
+    return (i < 0) ? null : values[i];
+  }
+
+  @Override
+  public JNode put(final String key, final JNode value) {
+    int i = indexOf(key);
+    if (i >= 0) {
+      JNode old = values[i];
+      values[i] = value;
+      return old;
+    }
+    if (size == keys.length) {
+      int capacity = (size == 0) ? INITIAL_CAPACITY : size * 2;
+      String [] newKeys = new String[capacity];
+      JNode [] newValues = new JNode[capacity];
+      System.arraycopy(keys, 0, newKeys, 0, size);
+      System.arraycopy(values, 0, newValues, 0, size);
+      keys = newKeys;
+      values = newValues;
+    }
+    keys[size] = key;
+    values[size] = value;
+    size++;
+    modCount++;
+    if (table != null && size * 2 <= table.length) {
+      insert(table, size - 1);
+    } else if (size > LINEAR_LIMIT) {
+      rehash();
+    }
+    return null;
+  }
+
+  @Override
+  public JNode remove(final Object key) {
+    int i = indexOf(key);
+    return (i < 0) ? null : removeAt(i);
+  }
+
+  /**
+   * Remove property at given position.
+   * @param i position in insertion order.
+   * @return removed value
+   */
+  private JNode removeAt(final int i) {
+    JNode old = values[i];
+    if (table != null) {
+      if (size - 1 <= LINEAR_LIMIT) {
+        table = null;
+      } else {
+        delete(i);
+      }
+    }
+    System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+    System.arraycopy(values, i + 1, values, i, size - i - 1);
+    size--;
+    keys[size] = null;
+    values[size] = null;
+    modCount++;
+    return old;
+  }
+
+  /**
+   * Delete property at given position from table before it is removed from arrays: entries
+   * of the same probe sequence are moved back to the freed slot, positions after it are
+   * decremented.
+   * @param i position of property.
+   */
+  private void delete(final int i) {
+    int mask = table.length - 1;
+    int hole = spread(keys[i].hashCode()) & mask;
+    while (table[hole] != i + 1) {
+      hole = (hole + 1) & mask;
+    }
+    for (int next = (hole + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+      int home = spread(keys[table[next] - 1].hashCode()) & mask;
+      // entry can move to the hole if its home slot is not between the hole and it
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        table[hole] = table[next];
+        hole = next;
+      }
+    }
+    table[hole] = 0;
+    for (int slot = 0; slot < table.length; slot++) {
+      if (table[slot] > i + 1) {
+        table[slot]--;
+      }
+    }
+  }
+
+  @Override
+  public void clear() {
+    keys = NO_KEYS;
+    values = NO_VALUES;
+    size = 0;
+    table = null;
+    modCount++;
+  }
+
+  /**
+   * Build table for current keys, drop it if map became small.
+   */
+  private void rehash() {
+    if (size <= LINEAR_LIMIT) {
+      table = null;
+      return;
+    }
+    int [] newTable = new int[Integer.highestOneBit(size * 2 - 1) << 1];
+    for (int i = 0; i < size; i++) {
+      insert(newTable, i);
+    }
+    table = newTable;
+  }
+
+  /**
+   * Put position of property to table.
+   * @param pTable open addressing table.
+   * @param i position of property.
+   */
+  private void insert(final int [] pTable, final int i) {
+    int mask = pTable.length - 1;
+    int slot = spread(keys[i].hashCode()) & mask;
+    while (pTable[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    pTable[slot] = i + 1;
+  }
+
+  @Override
+  public Set<String> keySet() {
+    return new AbstractSet<String>() {
+      @Override
+      public Iterator<String> iterator() {
+        return new Cursor<String>() {
+          @Override
+          String at(final int i) {
+            return keys[i];
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      public boolean contains(final Object o) {
+        return containsKey(o);
+      }
+
+      @Override
+      public boolean remove(final Object o) {
+        int i = indexOf(o);
+        if (i < 0) {
+          return false;
+        }
+        removeAt(i);
+        return true;
+      }
+    };
+  }
+
+  @Override
+  public Collection<JNode> values() {
+    return new AbstractCollection<JNode>() {
+      @Override
+      public Iterator<JNode> iterator() {
+        return new Cursor<JNode>() {
+          @Override
+          JNode at(final int i) {
+            return values[i];
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  @Override
+  public Set<Map.Entry<String, JNode>> entrySet() {
+    return new AbstractSet<Map.Entry<String, JNode>>() {
+      @Override
+      public Iterator<Map.Entry<String, JNode>> iterator() {
+        return new Cursor<Map.Entry<String, JNode>>() {
+          @Override
+          Map.Entry<String, JNode> at(final int i) {
+            return new SimpleImmutableEntry<String, JNode>(keys[i], values[i]);
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Read only list of values, positional access does not copy the map.
+   */
+  private final class ValueList extends AbstractList<JNode> implements RandomAccess {
+    @Override
+    public JNode get(final int index) {
+      return valueAt(index);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+
+  /**
+   * Iterator over positions of properties in insertion order.
+   * @param <E> type of element of the view.
+   */
+  private abstract class Cursor<E> implements Iterator<E> {
+    /** Position of next property. */
+    private int next;
+    /** Position of last returned property or -1. */
+    private int last = -1;
+    /** Expected number of modifications. */
+    private int expected = modCount;
+
+    /**
+     * Returns element of the view for property at given position.
+     * @param i position in insertion order.
+     * @return E
+     */
+    abstract E at(int i);
+
+    @Override
+    public boolean hasNext() {
+      return next < size;
+    }
+
+    @Override
+    public E next() {
+      if (expected != modCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (next >= size) {
+        throw new NoSuchElementException();
+      }
+      last = next++;
+      return at(last);
+    }
+
+    @Override
+    public void remove() {
+      if (last < 0) {
+        throw new IllegalStateException();
+      }
+      if (expected != modCount) {
+        throw new ConcurrentModificationException();
+      }
+      removeAt(last);
+      next = last;
+      last = -1;
+      expected = modCount;
+    }
+  }
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.nodetree;
+
+import com.ak.json.JNode;
+
+/**
+ * Class JNumberNode is a value node that keeps number in primitive field instead of boxed
+ * Integer, Long, Float or Double object. {@link #getLong()} and {@link #getDouble()} read the
+ * value without allocation, {@link #getValue()} boxes it on each call (see {@link #value()}).
+ * Integer and long values are kept as is, float and double values as bits of double.
+ * Node behaves as ordinary JValueNode if it is set to string, boolean or null value.
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+// inherited V getValue() of JValueNode implements generic getValue() of JNode
+@SuppressWarnings("unchecked")
+public class JNumberNode extends JValueNode<Object> {
+  /** Least integer that is kept as shared Integer box. */
+  private static final long SHARED_MIN = -128;
+  /** Greatest integer that is kept as shared Integer box. */
+  private static final long SHARED_MAX = 127;
+
+  /** Integer value or bits of floating point value. */
+  private long bits;
+
+  /**
+   * Constructor for detached node with INTEGER value.
+   * @param val value of the node.
+   */
+  public JNumberNode(final int val) {
+    super();
+    set(JValueType.INTEGER, val);
+  }
+
+  /**
+   * Constructor for detached node with LONG value.
+   * @param val value of the node.
+   */
+  public JNumberNode(final long val) {
+    super();
+    set(JValueType.LONG, val);
+  }
+
+  /**
+   * Constructor for detached node with FLOAT value.
+   * @param val value of the node.
+   */
+  public JNumberNode(final float val) {
+    super();
+    set(JValueType.FLOAT, Double.doubleToRawLongBits(val));
+  }
+
+  /**
+   * Constructor for detached node with DOUBLE value.
+   * @param val value of the node.
+   */
+  public JNumberNode(final double val) {
+    super();
+    set(JValueType.DOUBLE, Double.doubleToRawLongBits(val));
+  }
+
+  /**
+   * Returns detached node for integer number of parsed document: INTEGER value if it fits,
+   * LONG otherwise. Small integers share boxes from cache of Integer, such node is smaller than
+   * JNumberNode.
+   * @param value integer number.
+   * @return JValueNode
+   */
+  public static JValueNode<?> valueOf(final long value) {
+    if (value >= SHARED_MIN && value <= SHARED_MAX) {
+      return new JValueNode<Integer>(Integer.valueOf((int) value));
+    } else if (value == (int) value) {
+      return new JNumberNode((int) value);
+    }
+    return new JNumberNode(value);
+  }
+
+  /**
+   * Returns detached node for floating point number of parsed document: FLOAT value if it is in
+   * range of float, DOUBLE otherwise.
+   * @param value floating point number.
+   * @return JValueNode
+   */
+  public static JValueNode<?> valueOf(final double value) {
+    float f = (float) value;
+    if (Float.isInfinite(f)) {
+      return new JNumberNode(value);
+    }
+    return new JNumberNode(f);
+  }
+
+  /**
+   * Keep primitive value.
+   * @param pType type of value.
+   * @param pBits integer value or bits of floating point value.
+   */
+  private void set(final JValueType pType, final long pBits) {
+    super.setValue(null);
+    valueType = pType;
+    bits = pBits;
+  }
+
+  @Override
+  public JNode clone() {
+    JNumberNode copy = new JNumberNode(0);
+    copy.parent = parent;
+    copy.setKey(getKey());
+    if (isNumber()) {
+      copy.set(valueType, bits);
+    } else {
+      copy.setValue(getValue());
+    }
+    return copy;
+  }
+
+  /**
+   * Check if node keeps primitive value.
+   * @return boolean
+   */
+  private boolean isNumber() {
+    switch (valueType) {
+    case INTEGER :
+    case LONG :
+    case FLOAT :
+    case DOUBLE :
+      return true;
+    default :
+      return false;
+    }
+  }
+
+  @Override
+  protected Object value() {
+    switch (valueType) {
+    case INTEGER :
+      return Integer.valueOf((int) bits);
+    case LONG :
+      return Long.valueOf(bits);
+    case FLOAT :
+      return Float.valueOf((float) Double.longBitsToDouble(bits));
+    case DOUBLE :
+      return Double.valueOf(Double.longBitsToDouble(bits));
+    default :
+      return super.value();
+    }
+  }
+
+  @Override
+  public <V1> void setValue(final V1 value) {
+    if (value instanceof Integer) {
+      set(JValueType.INTEGER, ((Integer) value).intValue());
+    } else if (value instanceof Long) {
+      set(JValueType.LONG, ((Long) value).longValue());
+    } else if (value instanceof Float) {
+      set(JValueType.FLOAT, Double.doubleToRawLongBits(((Float) value).floatValue()));
+    } else if (value instanceof Double) {
+      set(JValueType.DOUBLE, Double.doubleToRawLongBits(((Double) value).doubleValue()));
+    } else {
+      super.setValue(value);
+      return;
+    }
+    if (parent instanceof JArrayNode) {
+      ((JArrayNode) parent).elementChanged();
+    }
+  }
+
+  @Override
+  public long getLong() {
+    switch (valueType) {
+    case INTEGER :
+    case LONG :
+      return bits;
+    case FLOAT :
+    case DOUBLE :
+      return (long) Double.longBitsToDouble(bits);
+    default :
+      return super.getLong();
+    }
+  }
+
+  @Override
+  public double getDouble() {
+    switch (valueType) {
+    case INTEGER :
+    case LONG :
+      return bits;
+    case FLOAT :
+    case DOUBLE :
+      return Double.longBitsToDouble(bits);
+    default :
+      return super.getDouble();
+    }
+  }
+
+  @Override
+  public String toJson() {
+    switch (valueType) {
+    case INTEGER :
+    case LONG :
+      return Long.toString(bits);
+    case FLOAT :
+      return Float.toString((float) Double.longBitsToDouble(bits));
+    case DOUBLE :
+      return Double.toString(Double.longBitsToDouble(bits));
+    default :
+      return super.toJson();
+    }
+  }
+}
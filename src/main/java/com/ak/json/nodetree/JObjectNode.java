@@ -17,12 +17,8 @@
 
 package com.ak.json.nodetree;
 
-import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import com.ak.json.JInstrumentalNode;
@@ -34,8 +30,8 @@ import com.ak.json.JNode;
  *
  */
 public class JObjectNode extends AbstractJNode implements JNode {
-  /** Map Container keeps properties of the node.*/
-  private Map<String, JNode> elements;
+  /** Map Container keeps properties of the node in insertion order (see {@link JFieldMap}).*/
+  private JFieldMap elements;
 
   /**
    * Default constructor for detached node.
@@ -58,18 +54,37 @@ public class JObjectNode extends AbstractJNode implements JNode {
    * Initiation of the node.
    */
   private void init() {
-    elements = new LinkedHashMap<String, JNode>();
+    elements = new JFieldMap();
     type = JNodeType.OBJECT;
   }
 
+  /**
+   * Returns container of properties. Node that creates its children on demand does it here.
+   * @return container
+   */
+  private JFieldMap elements() {
+    expand();
+    return elements;
+  }
+
   @Override
   public <T> JNode getNode(final T name) {
-    return elements.get(name);
+    return elements().get(name);
   }
 
   @Override
   public List<JNode> getChildren() {
-    return Arrays.asList(elements.values().toArray(new JNode[] {}));
+    return elements().valueList();
+  }
+
+  @Override
+  public JNode getNodeAt(final int index) {
+    return elements().valueAt(index);
+  }
+
+  @Override
+  public int childCount() {
+    return elements().size();
   }
 
   @Override
@@ -86,7 +101,7 @@ public class JObjectNode extends AbstractJNode implements JNode {
     String key = ((AbstractJNode) jnode).getKey();
     if (key != null) {
       ((AbstractJNode) jnode).parent = this;
-      elements.put(key, jnode);
+      elements().put(key, jnode);
     } else {
         throw new RuntimeException("Add wrong element " + jnode + " without key.");
     }
@@ -101,22 +116,22 @@ public class JObjectNode extends AbstractJNode implements JNode {
 
   @Override
   public <K> void removeNode(final K selector) {
-    elements.remove(selector);
+    elements().remove(selector);
   }
 
   @Override
   public <N extends JNode> void removeNode(final N node) {
-    elements.remove(((JInstrumentalNode) node).getKey());
+    elements().remove(((JInstrumentalNode) node).getKey());
   }
 
   @Override
   public Iterator<JNode> iterator() {
-    return elements.values().iterator();
+    return elements().values().iterator();
   }
 
   @Override
   public Set<String> fieldNames() {
-    return elements.keySet();
+    return elements().keySet();
   }
 
    @Override
@@ -129,9 +144,10 @@ public class JObjectNode extends AbstractJNode implements JNode {
     StringBuffer value = new StringBuffer();
     String delimiter = "";
     value.append("{");
-    for (Entry<String, JNode> n : elements.entrySet()) {
-      JNode jn = n.getValue();
-      value.append(delimiter + indent + "\"" + n.getKey() + "\":");
+    JFieldMap map = elements();
+    for (int i = 0; i < map.size(); i++) {
+      JNode jn = map.valueAt(i);
+      value.append(delimiter + indent + "\"" + map.keyAt(i) + "\":");
       if (deep) {
         value.append(jn.toString(indent + "  ", showPath, deep));
       } else {
@@ -160,8 +176,9 @@ public class JObjectNode extends AbstractJNode implements JNode {
     StringBuffer value = new StringBuffer();
     String delimiter = "";
     value.append("{");
-    for (Entry<String, JNode> n : elements.entrySet()) {
-      value.append(delimiter + "\"" + n.getKey() + "\":" + n.getValue().toJson());
+    JFieldMap map = elements();
+    for (int i = 0; i < map.size(); i++) {
+      value.append(delimiter + "\"" + map.keyAt(i) + "\":" + map.valueAt(i).toJson());
       delimiter = ",";
     }
     value.append("}");
@@ -172,7 +189,7 @@ public class JObjectNode extends AbstractJNode implements JNode {
   public int hashCode() {
     final int prime = 31;
     int result = super.hashCode();
-    result = prime * result + ((elements == null) ? 0 : elements.hashCode());
+    result = prime * result + ((elements == null) ? 0 : elements().hashCode());
     return result;
   }
 
@@ -192,7 +209,7 @@ public class JObjectNode extends AbstractJNode implements JNode {
       if (other.elements != null) {
         return false;
       }
-    } else if (!elements.equals(other.elements)) {
+    } else if (!elements().equals(other.elements())) {
       return false;
     }
     return true;
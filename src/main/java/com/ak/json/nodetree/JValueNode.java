@@ -28,7 +28,8 @@ public class JValueNode<V> extends AbstractJNode {
 	/** Value of this simple node. */
 	private V primitiveValue;
 
-	private JValueType valueType;
+	/** Type of the value. */
+	protected JValueType valueType;
 
 	/**
 	 * Default constructor for detached node.
@@ -71,146 +72,168 @@ public class JValueNode<V> extends AbstractJNode {
 	 */
 	private void init() {
 		type = JNodeType.VALUE;
+		valueType = JValueType.NULL;
 	}
 
 	@Override
 	public JNode clone() {
 		JValueNode<V> copy = new JValueNode<V>(parent);
-		copy.setValue(primitiveValue);
+		copy.setValue(getValue());
 		copy.setKey(getKey());
 		return copy;
 	}
 
+	/**
+	 * Returns type of the value.
+	 * @return JValueType
+	 */
+	public JValueType getValueType() {
+		return valueType;
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public V getValue() {
+		return (V) value();
+	}
+
+	/**
+	 * Returns value of the node. Subclass that keeps value in other form than
+	 * object of type V creates the object here.
+	 * @return Object
+	 */
+	protected Object value() {
 		return primitiveValue;
 	}
 
 	@SuppressWarnings("unchecked")
 	@Override
 	public <V1> V1 getValue(final Class<V1> pType) {
-		switch (pType.getSimpleName()) {
-
-		case "Boolean" :
+		if (pType == String.class) {
+			return pType.cast((valueType == JValueType.STRING) ? getValue() : toJson());
+		}
+		if (pType == Boolean.class) {
 			switch (valueType) {
 			case BOOLEAN :
-				return pType.cast(primitiveValue);
+				return pType.cast(getValue());
 			case STRING :
-				return (V1) Boolean.valueOf((String) primitiveValue);
+				return pType.cast(Boolean.valueOf(getBoolean()));
 			default :
 				return null;
 			}
-
-		case "String" :
-			switch (valueType) {
-			case STRING :
-				return pType.cast(primitiveValue);
-			default :
-				return (V1) String.valueOf(primitiveValue);
-			}
-
-		case "Integer" :
+		}
+		if (pType == Integer.class || pType == Long.class || pType == Float.class || pType == Double.class) {
 			switch (valueType) {
-			case BOOLEAN :
-				return null;
 			case STRING :
 				try {
-					return (V1) Integer.valueOf((String) primitiveValue);
+					return (V1) parse(pType, (String) getValue());
 				} catch (NumberFormatException e) {
 					return null;
 				}
 			case INTEGER :
-				return (V1) primitiveValue;
 			case LONG :
-				return (V1) Integer.valueOf(((Long) primitiveValue).intValue());
+				return (V1) box(pType, getLong());
 			case FLOAT :
-				return (V1) Integer.valueOf(((Float) primitiveValue).intValue());
 			case DOUBLE :
-				return (V1) Integer.valueOf(((Double) primitiveValue).intValue());
-			case NULL :
-				return null;
+				return (V1) box(pType, getDouble());
 			default :
 				return null;
 			}
+		}
+		return pType.cast(getValue());
+	}
 
-		case "Long" :
-			switch (valueType) {
-			case BOOLEAN :
-				return null;
-			case STRING :
-				try {
-					return (V1) Long.valueOf((String) primitiveValue);
-				} catch (NumberFormatException e) {
-					return null;
-				}
-			case INTEGER :
-				return (V1) Long.valueOf(((Integer) primitiveValue).intValue());
-			case LONG :
-				return (V1) primitiveValue;
-			case FLOAT :
-				return (V1) Long.valueOf(((Float) primitiveValue).intValue());
-			case DOUBLE :
-				return (V1) Long.valueOf(((Double) primitiveValue).intValue());
-			case NULL :
-				return null;
-			default :
-				return null;
-			}
+	/**
+	 * Parse string to number of given type.
+	 * @param pType Integer, Long, Float or Double class.
+	 * @param text string to parse.
+	 * @return Number
+	 */
+	private static Number parse(final Class<?> pType, final String text) {
+		if (pType == Integer.class) {
+			return Integer.valueOf(text);
+		} else if (pType == Long.class) {
+			return Long.valueOf(text);
+		} else if (pType == Float.class) {
+			return Float.valueOf(text);
+		}
+		return Double.valueOf(text);
+	}
 
-		case "Float" :
-			switch (valueType) {
-			case BOOLEAN :
-				return null;
-			case STRING :
-				try {
-					return (V1) Float.valueOf((String) primitiveValue);
-				} catch (NumberFormatException e) {
-					return null;
-				}
-			case INTEGER :
-				return (V1) Float.valueOf(((Integer) primitiveValue).floatValue());
-			case LONG :
-				return (V1) Float.valueOf(((Long) primitiveValue).floatValue());
-			case FLOAT :
-				return (V1) primitiveValue;
-			case DOUBLE :
-				return (V1) Float.valueOf(((Double) primitiveValue).floatValue());
-			case NULL :
-				return null;
-			default :
-				return null;
-			}
+	/**
+	 * Convert integer value to number of given type.
+	 * @param pType Integer, Long, Float or Double class.
+	 * @param value integer value.
+	 * @return Number
+	 */
+	private static Number box(final Class<?> pType, final long value) {
+		if (pType == Integer.class) {
+			return Integer.valueOf((int) value);
+		} else if (pType == Long.class) {
+			return Long.valueOf(value);
+		} else if (pType == Float.class) {
+			return Float.valueOf(value);
+		}
+		return Double.valueOf(value);
+	}
 
-		case "Double" :
-			switch (valueType) {
-			case BOOLEAN :
-				return null;
-			case STRING :
-				try {
-					return (V1) Double.valueOf((String) primitiveValue);
-				} catch (NumberFormatException e) {
-					return null;
-				}
-			case INTEGER :
-				return (V1) Double.valueOf(((Integer) primitiveValue).doubleValue());
-			case LONG :
-				return (V1) Double.valueOf(((Long) primitiveValue).doubleValue());
-			case FLOAT :
-				return (V1) Double.valueOf(((Float) primitiveValue).doubleValue());
-			case DOUBLE :
-				return (V1) primitiveValue;
-			case NULL :
-				return null;
-			default :
-				return null;
-			}
+	/**
+	 * Convert floating point value to number of given type.
+	 * @param pType Integer, Long, Float or Double class.
+	 * @param value floating point value.
+	 * @return Number
+	 */
+	private static Number box(final Class<?> pType, final double value) {
+		if (pType == Integer.class) {
+			return Integer.valueOf((int) value);
+		} else if (pType == Long.class) {
+			return Long.valueOf((long) value);
+		} else if (pType == Float.class) {
+			return Float.valueOf((float) value);
+		}
+		return Double.valueOf(value);
+	}
 
+	@Override
+	public long getLong() {
+		switch (valueType) {
+		case INTEGER :
+		case LONG :
+		case FLOAT :
+		case DOUBLE :
+			return ((Number) primitiveValue).longValue();
+		case STRING :
+			return Long.parseLong((String) primitiveValue);
 		default :
-			break;
+			throw new RuntimeException("Try to get number from " + valueType + " value.");
 		}
+	}
 
-		return pType.cast(primitiveValue);
+	@Override
+	public double getDouble() {
+		switch (valueType) {
+		case INTEGER :
+		case LONG :
+		case FLOAT :
+		case DOUBLE :
+			return ((Number) primitiveValue).doubleValue();
+		case STRING :
+			return Double.parseDouble((String) primitiveValue);
+		default :
+			throw new RuntimeException("Try to get number from " + valueType + " value.");
+		}
+	}
+
+	@Override
+	public boolean getBoolean() {
+		switch (valueType) {
+		case BOOLEAN :
+			return ((Boolean) primitiveValue).booleanValue();
+		case STRING :
+			return Boolean.parseBoolean((String) primitiveValue);
+		default :
+			throw new RuntimeException("Try to get boolean from " + valueType + " value.");
+		}
 	}
 
 	@SuppressWarnings("unchecked")
@@ -232,6 +255,10 @@ public class JValueNode<V> extends AbstractJNode {
 			valueType = JValueType.NULL;
 		}
 		this.primitiveValue = (V) value;
+		if (parent instanceof JArrayNode) {
+			// node of primitive element keeps the new value, array keeps nodes from now
+			((JArrayNode) parent).elementChanged();
+		}
 	}
 
 	@Override
@@ -271,20 +298,22 @@ public class JValueNode<V> extends AbstractJNode {
 
 	@Override
 	public String toJson() {
-		if (primitiveValue == null) {
+		Object value = getValue();
+		if (value == null) {
 			return "null";
 		}
-		if (primitiveValue instanceof String) {
-			return "\"" + primitiveValue.toString() + "\"";
+		if (value instanceof String) {
+			return "\"" + value.toString() + "\"";
 		}
-		return String.valueOf(primitiveValue);
+		return String.valueOf(value);
 	}
 
 	@Override
 	public int hashCode() {
 		final int prime = 31;
+		Object value = getValue();
 		int result = super.hashCode();
-		result = prime * result + ((primitiveValue == null) ? 0 : primitiveValue.hashCode());
+		result = prime * result + ((value == null) ? 0 : value.hashCode());
 		return result;
 	}
 
@@ -299,13 +328,13 @@ public class JValueNode<V> extends AbstractJNode {
 		if (!(obj instanceof JValueNode)) {
 			return false;
 		}
-		@SuppressWarnings("unchecked")
-		JValueNode<V> other = (JValueNode<V>) obj;
-		if (primitiveValue == null) {
-			if (other.primitiveValue != null) {
+		Object value = getValue();
+		Object otherValue = ((JValueNode<?>) obj).getValue();
+		if (value == null) {
+			if (otherValue != null) {
 				return false;
 			}
-		} else if (!primitiveValue.equals(other.primitiveValue)) {
+		} else if (!value.equals(otherValue)) {
 			return false;
 		}
 		return true;
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.transform;
+
+import java.lang.ref.SoftReference;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Class JBufferRecycler keeps windows of tokenizers between parse() calls.
+ * Every thread has its own byte array, char array and direct byte buffer, so
+ * a parser shared by many threads does not allocate a new window for every
+ * document and does not synchronize. An array is taken out of the recycler
+ * while a tokenizer uses it, so nested parsing in the same thread gets a new
+ * array.
+ * <p>
+ * Arrays are held by soft references and are released under memory pressure.
+ * Arrays and buffers bigger than {@link #MAX_RECYCLED_SIZE} are not kept.
+ *
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+final class JBufferRecycler {
+	/** Longest array kept by recycler. */
+	static final int MAX_RECYCLED_SIZE = 1 << 20;
+
+	/** Recycler of every thread. */
+	private static final ThreadLocal<SoftReference<JBufferRecycler>> RECYCLERS =
+			new ThreadLocal<SoftReference<JBufferRecycler>>();
+
+	/** Free array of bytes or null. */
+	private byte[] bytes;
+	/** Free array of chars or null. */
+	private char[] chars;
+	/** Free direct buffer or null. */
+	private ByteBuffer direct;
+
+	/**
+	 * Constructor.
+	 */
+	private JBufferRecycler() {
+	}
+
+	/**
+	 * Returns recycler of the current thread.
+	 *
+	 * @return JBufferRecycler
+	 */
+	private static JBufferRecycler current() {
+		SoftReference<JBufferRecycler> ref = RECYCLERS.get();
+		JBufferRecycler recycler = (ref == null) ? null : ref.get();
+		if (recycler == null) {
+			recycler = new JBufferRecycler();
+			RECYCLERS.set(new SoftReference<JBufferRecycler>(recycler));
+		}
+		return recycler;
+	}
+
+	/**
+	 * Take array of bytes.
+	 *
+	 * @param size
+	 *          minimal length of array.
+	 * @return recycled or new array.
+	 */
+	static byte[] takeBytes(final int size) {
+		JBufferRecycler recycler = current();
+		byte[] array = recycler.bytes;
+		if (array == null || array.length < size) {
+			return new byte[size];
+		}
+		recycler.bytes = null;
+		return array;
+	}
+
+	/**
+	 * Return array of bytes to recycler of the current thread.
+	 *
+	 * @param array
+	 *          array that is not used any more.
+	 */
+	static void release(final byte[] array) {
+		JBufferRecycler recycler = current();
+		if (array.length <= MAX_RECYCLED_SIZE && (recycler.bytes == null || recycler.bytes.length < array.length)) {
+			recycler.bytes = array;
+		}
+	}
+
+	/**
+	 * Take array of chars.
+	 *
+	 * @param size
+	 *          minimal length of array.
+	 * @return recycled or new array.
+	 */
+	static char[] takeChars(final int size) {
+		JBufferRecycler recycler = current();
+		char[] array = recycler.chars;
+		if (array == null || array.length < size) {
+			return new char[size];
+		}
+		recycler.chars = null;
+		return array;
+	}
+
+	/**
+	 * Return array of chars to recycler of the current thread.
+	 *
+	 * @param array
+	 *          array that is not used any more.
+	 */
+	static void release(final char[] array) {
+		JBufferRecycler recycler = current();
+		if (array.length <= MAX_RECYCLED_SIZE && (recycler.chars == null || recycler.chars.length < array.length)) {
+			recycler.chars = array;
+		}
+	}
+
+	/**
+	 * Take direct buffer. Position of the buffer is 0, limit is its capacity.
+	 *
+	 * @param size
+	 *          minimal capacity of buffer.
+	 * @return recycled or new buffer.
+	 */
+	static ByteBuffer takeDirect(final int size) {
+		JBufferRecycler recycler = current();
+		ByteBuffer buffer = recycler.direct;
+		if (buffer == null || buffer.capacity() < size) {
+			return ByteBuffer.allocateDirect(size);
+		}
+		recycler.direct = null;
+		((Buffer) buffer).clear();
+		return buffer;
+	}
+
+	/**
+	 * Return direct buffer to recycler of the current thread.
+	 *
+	 * @param buffer
+	 *          buffer that is not used any more.
+	 */
+	static void release(final ByteBuffer buffer) {
+		JBufferRecycler recycler = current();
+		if (buffer.capacity() <= MAX_RECYCLED_SIZE
+				&& (recycler.direct == null || recycler.direct.capacity() < buffer.capacity())) {
+			recycler.direct = buffer;
+		}
+	}
+}
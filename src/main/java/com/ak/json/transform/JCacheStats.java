@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.transform;
+
+import java.util.Locale;
+
+/**
+ * Class JCacheStats is a snapshot of statistics of a string cache of JParser
+ * (field names cache or string values cache). Every thread has its own table
+ * of the cache, numbers are summed over all threads; counting is exact, but
+ * numbers taken while other threads parse can be a moment behind.
+ *
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+public final class JCacheStats {
+	/** Number of lookups. */
+	private final long lookups;
+	/** Number of lookups that found string in cache. */
+	private final long hits;
+	/** Estimated size of strings that were not created because of hits. */
+	private final long savedBytes;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pLookups
+	 *          number of lookups.
+	 * @param pHits
+	 *          number of hits.
+	 * @param pSavedBytes
+	 *          estimated saved bytes.
+	 */
+	JCacheStats(final long pLookups, final long pHits, final long pSavedBytes) {
+		this.lookups = pLookups;
+		this.hits = pHits;
+		this.savedBytes = pSavedBytes;
+	}
+
+	/**
+	 * Returns number of lookups.
+	 *
+	 * @return long
+	 */
+	public long getLookups() {
+		return lookups;
+	}
+
+	/**
+	 * Returns number of lookups that found string in cache.
+	 *
+	 * @return long
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns part of lookups that found string in cache, from 0 to 1.
+	 *
+	 * @return double
+	 */
+	public double getHitRatio() {
+		return (lookups == 0) ? 0 : (double) hits / lookups;
+	}
+
+	/**
+	 * Returns estimated heap size of String objects that were not created
+	 * because they were found in cache. Estimation assumes compact (one byte per
+	 * symbol) strings: cache keeps only ASCII strings.
+	 *
+	 * @return long
+	 */
+	public long getSavedBytes() {
+		return savedBytes;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "lookups=%d hits=%d hitRatio=%.3f savedBytes=%d", lookups, hits, getHitRatio(), savedBytes);
+	}
+}
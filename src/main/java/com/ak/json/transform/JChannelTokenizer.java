@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.transform;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+
+/**
+ * Class JChannelTokenizer scans UTF-8 encoded JSON text read from a blocking
+ * channel (use JFeedParser for non blocking ones). Channel reads into a
+ * direct buffer that is recycled between documents (see
+ * {@link JBufferRecycler}), so bytes are not copied through heap arrays. The
+ * buffer grows only if a single token does not fit in it.
+ *
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+final class JChannelTokenizer extends JBufferTokenizer {
+	/** Default size of the window. */
+	static final int DEFAULT_BUFFER_SIZE = 65536;
+
+	/** Source of bytes. */
+	private final ReadableByteChannel channel;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pChannel
+	 *          source of UTF-8 encoded text.
+	 * @throws IllegalArgumentException
+	 *           if the channel is in non blocking mode.
+	 */
+	JChannelTokenizer(final ReadableByteChannel pChannel) {
+		super(checkBlocking(pChannel));
+		this.channel = pChannel;
+		this.limit = 0;
+	}
+
+	/**
+	 * Reject non blocking channel, it would make reading spin while no bytes
+	 * are available.
+	 *
+	 * @param pChannel
+	 *          source of text.
+	 * @return window buffer for the tokenizer.
+	 */
+	private static ByteBuffer checkBlocking(final ReadableByteChannel pChannel) {
+		if (pChannel instanceof SelectableChannel && !((SelectableChannel) pChannel).isBlocking()) {
+			throw new IllegalArgumentException("Channel is in non blocking mode, use JFeedParser to parse it");
+		}
+		return JBufferRecycler.takeDirect(DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Read from channel after valid bytes of the window. Bytes starting from the
+	 * current token are kept. Limit of the window buffer stays at its capacity,
+	 * the tokenizer tracks valid bytes by itself.
+	 */
+	@Override
+	protected boolean fill() throws IOException {
+		if (start > 0) {
+			ByteBuffer kept = buf.duplicate();
+			((Buffer) kept).limit(limit);
+			((Buffer) kept).position(start);
+			kept.compact();
+			dropped += start;
+			limit -= start;
+			pos -= start;
+			end -= start;
+			start = 0;
+		}
+		if (limit == buf.capacity()) {
+			ByteBuffer bigger = ByteBuffer.allocateDirect(buf.capacity() * 2);
+			ByteBuffer kept = buf.duplicate();
+			((Buffer) kept).limit(limit);
+			bigger.put(kept);
+			((Buffer) bigger).clear();
+			setWindow(bigger);
+		}
+		ByteBuffer input = buf.duplicate();
+		((Buffer) input).position(limit);
+		int n = channel.read(input);
+		if (n == 0) {
+			// blocking channel returns at least one byte or end of stream
+			throw new IOException("Channel returned no bytes, non blocking channels are parsed by JFeedParser");
+		}
+		if (n < 0) {
+			return false;
+		}
+		limit += n;
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (buf != null) {
+			JBufferRecycler.release(buf);
+			buf = null;
+		}
+		channel.close();
+	}
+}
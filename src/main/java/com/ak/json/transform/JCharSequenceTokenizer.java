@@ -0,0 +1,257 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.transform;
+
+import com.ak.json.JParseEvent;
+import com.ak.json.JParserException;
+
+/**
+ * Class JCharSequenceTokenizer scans JSON text of CharSequence (StringBuilder,
+ * CharBuffer and so on) in place. Symbols are not copied to a window; only text
+ * of requested tokens is extracted from the sequence. The sequence must not be
+ * changed while it is scanned.
+ *
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+final class JCharSequenceTokenizer extends JTokenizer {
+	/** JSON text. */
+	private final CharSequence chars;
+	/** Cursor. */
+	private int pos;
+	/** End of text. */
+	private final int limit;
+	/** Start of the current token. */
+	private int start;
+	/** End of the current token. */
+	private int end;
+	/** True if the current string token contains line breaks to be removed. */
+	private boolean hasLineBreaks;
+	/** Cached text of the current token. */
+	private String text;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pChars
+	 *          JSON text.
+	 */
+	JCharSequenceTokenizer(final CharSequence pChars) {
+		this.chars = pChars;
+		this.limit = pChars.length();
+	}
+
+	/**
+	 * Skip white spaces.
+	 *
+	 * @return next symbol (not consumed) or -1 if end of text is reached.
+	 */
+	private int skipWhitespace() {
+		while (pos < limit) {
+			char c = chars.charAt(pos);
+			if (!isWhitespace(c)) {
+				return c;
+			}
+			pos++;
+		}
+		return -1;
+	}
+
+	@Override
+	JParseEvent next() throws JParserException {
+		text = null;
+		hasLineBreaks = false;
+		int c = skipWhitespace();
+		tokenOffset = pos;
+		start = pos;
+		end = pos + 1;
+		switch (c) {
+		case -1:
+			return event = null;
+		case '{':
+			pos++;
+			return event = JParseEvent.START_OBJECT;
+		case '[':
+			pos++;
+			return event = JParseEvent.START_ARRAY;
+		case '}':
+			pos++;
+			return event = JParseEvent.END_OBJECT;
+		case ']':
+			pos++;
+			return event = JParseEvent.END_ARRAY;
+		case ',':
+			pos++;
+			return event = JParseEvent.DELIMITER;
+		case ':':
+			throw new JParserException("Json syntax : unexpected symbol ':'", tokenOffset);
+		case '"':
+			pos++;
+			scanString();
+			return event = afterValue(JParseEvent.VALUE_STRING);
+		default:
+			scanLiteral();
+			return event = afterValue(JParseEvent.VALUE);
+		}
+	}
+
+	@Override
+	JParseEvent skipContainer() {
+		text = null;
+		hasLineBreaks = false;
+		int level = 1;
+		boolean inString = false;
+		while (pos < limit) {
+			char c = chars.charAt(pos);
+			if (inString) {
+				if (c == '"') {
+					inString = false;
+				} else if (c == '\\') {
+					pos++;
+				}
+			} else if (c == '"') {
+				inString = true;
+			} else if (c == '{' || c == '[') {
+				level++;
+			} else if ((c == '}' || c == ']') && --level == 0) {
+				tokenOffset = pos;
+				start = pos++;
+				end = pos;
+				return event = (c == '}') ? JParseEvent.END_OBJECT : JParseEvent.END_ARRAY;
+			}
+			pos++;
+		}
+		start = end = pos = limit;
+		return event = null;
+	}
+
+	/**
+	 * Scan string up to closing quote. Escape sequences are kept as is.
+	 */
+	private void scanString() {
+		start = pos;
+		while (pos < limit) {
+			char c = chars.charAt(pos);
+			if (c == '"') {
+				end = pos++;
+				return;
+			}
+			if (c == '\\') {
+				pos += 2;
+				continue;
+			}
+			if (c == '\n' || c == '\r') {
+				hasLineBreaks = true;
+			}
+			pos++;
+		}
+		end = pos = limit;
+	}
+
+	/**
+	 * Scan literal value (number, true, false, null).
+	 */
+	private void scanLiteral() {
+		start = pos;
+		while (pos < limit && !isTerminator(chars.charAt(pos))) {
+			pos++;
+		}
+		end = pos;
+	}
+
+	/**
+	 * Look ahead after scalar value: ':' turns value into FIELD_NAME, ',' is
+	 * absorbed by the value.
+	 *
+	 * @param valueEvent
+	 *          event of the scanned value.
+	 * @return JParseEvent
+	 */
+	private JParseEvent afterValue(final JParseEvent valueEvent) {
+		int c = skipWhitespace();
+		comma = false;
+		if (c == ':') {
+			pos++;
+			return JParseEvent.FIELD_NAME;
+		}
+		if (c == ',') {
+			pos++;
+			comma = true;
+		}
+		return valueEvent;
+	}
+
+	@Override
+	String getText() {
+		if (text == null && event != null) {
+			String symbol = SYMBOLS[event.ordinal()];
+			if (symbol != null) {
+				text = symbol;
+			} else if (event == JParseEvent.FIELD_NAME && symbols != null && !hasLineBreaks) {
+				text = symbols.get(chars, start, end);
+			} else if (event == JParseEvent.VALUE_STRING && values != null && !hasLineBreaks) {
+				text = values.get(chars, start, end);
+			} else if (hasLineBreaks) {
+				StringBuilder sb = new StringBuilder(end - start);
+				for (int i = start; i < end; i++) {
+					char c = chars.charAt(i);
+					if (c != '\n' && c != '\r') {
+						sb.append(c);
+					}
+				}
+				text = sb.toString();
+			} else {
+				text = chars.subSequence(start, end).toString();
+			}
+		}
+		return text;
+	}
+
+	@Override
+	int copyText(final char[] dest) {
+		int length = end - start;
+		if (length <= dest.length) {
+			for (int i = 0; i < length; i++) {
+				dest[i] = chars.charAt(start + i);
+			}
+		}
+		return length;
+	}
+
+	@Override
+	String flush() {
+		StringBuilder sb = new StringBuilder();
+		while (pos < limit) {
+			char c = chars.charAt(pos++);
+			if (!isWhitespace(c)) {
+				sb.append(c);
+			}
+		}
+		start = pos;
+		return sb.toString();
+	}
+
+	@Override
+	long getOffset() {
+		return pos;
+	}
+
+	@Override
+	public void close() {
+	}
+}
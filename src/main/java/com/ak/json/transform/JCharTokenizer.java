@@ -0,0 +1,362 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.transform;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.ak.json.JParseEvent;
+import com.ak.json.JParserException;
+
+/**
+ * Class JCharTokenizer scans JSON text in a reusable char[] window with an
+ * index cursor. The window is refilled from a Reader by blocks; text of tokens
+ * is sliced directly from the window.
+ *
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+final class JCharTokenizer extends JTokenizer {
+	/** Default size of the window. */
+	static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/** Source of symbols. Null if whole text is in the window. */
+	private final Reader reader;
+	/** Window of symbols. */
+	private char[] buf;
+	/** Cursor. */
+	private int pos;
+	/** End of valid symbols in the window. */
+	private int limit;
+	/** Start of the current token in the window. */
+	private int start;
+	/** End of the current token in the window. */
+	private int end;
+	/** Number of symbols dropped from the window before buf[0]. */
+	private long dropped;
+	/** True if the current string token contains line breaks to be removed. */
+	private boolean hasLineBreaks;
+	/** Cached text of the current token. */
+	private String text;
+
+	/**
+	 * Constructor for tokenizer reading from stream of symbols.
+	 *
+	 * @param pReader
+	 *          source of symbols.
+	 */
+	JCharTokenizer(final Reader pReader) {
+		this.reader = pReader;
+		this.buf = JBufferRecycler.takeChars(DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Constructor for tokenizer scanning a string. Symbols of the string are
+	 * copied to a recycled array.
+	 *
+	 * @param text
+	 *          JSON text.
+	 */
+	JCharTokenizer(final String text) {
+		this.reader = null;
+		this.limit = text.length();
+		this.buf = JBufferRecycler.takeChars(limit);
+		text.getChars(0, limit, buf, 0);
+	}
+
+	/**
+	 * Read next block of symbols from reader into the window. Symbols starting
+	 * from the current token are kept.
+	 *
+	 * @return false if end of stream is reached.
+	 * @throws IOException
+	 *           while reading from stream.
+	 */
+	private boolean fill() throws IOException {
+		if (reader == null) {
+			return false;
+		}
+		if (start > 0) {
+			System.arraycopy(buf, start, buf, 0, limit - start);
+			dropped += start;
+			limit -= start;
+			pos -= start;
+			end -= start;
+			start = 0;
+		}
+		if (limit == buf.length) {
+			char[] newBuf = new char[buf.length * 2];
+			System.arraycopy(buf, 0, newBuf, 0, limit);
+			buf = newBuf;
+		}
+		int n = reader.read(buf, limit, buf.length - limit);
+		if (n <= 0) {
+			return false;
+		}
+		limit += n;
+		return true;
+	}
+
+	/**
+	 * Skip white spaces.
+	 *
+	 * @param keepToken
+	 *          if true then the current token is kept in the window.
+	 * @return next symbol (not consumed) or -1 if end of stream is reached.
+	 * @throws IOException
+	 *           while reading from stream.
+	 */
+	private int skipWhitespace(final boolean keepToken) throws IOException {
+		while (true) {
+			while (pos < limit) {
+				char c = buf[pos];
+				if (!isWhitespace(c)) {
+					return c;
+				}
+				pos++;
+			}
+			if (!keepToken) {
+				start = pos;
+			}
+			if (!fill()) {
+				return -1;
+			}
+		}
+	}
+
+	@Override
+	JParseEvent next() throws IOException, JParserException {
+		text = null;
+		hasLineBreaks = false;
+		int c = skipWhitespace(false);
+		tokenOffset = dropped + pos;
+		start = pos;
+		end = pos + 1;
+		switch (c) {
+		case -1:
+			return event = null;
+		case '{':
+			pos++;
+			return event = JParseEvent.START_OBJECT;
+		case '[':
+			pos++;
+			return event = JParseEvent.START_ARRAY;
+		case '}':
+			pos++;
+			return event = JParseEvent.END_OBJECT;
+		case ']':
+			pos++;
+			return event = JParseEvent.END_ARRAY;
+		case ',':
+			pos++;
+			return event = JParseEvent.DELIMITER;
+		case ':':
+			throw new JParserException("Json syntax : unexpected symbol ':'", tokenOffset);
+		case '"':
+			pos++;
+			scanString();
+			return event = afterValue(JParseEvent.VALUE_STRING);
+		default:
+			scanLiteral();
+			return event = afterValue(JParseEvent.VALUE);
+		}
+	}
+
+	@Override
+	JParseEvent skipContainer() throws IOException {
+		text = null;
+		hasLineBreaks = false;
+		int level = 1;
+		boolean inString = false;
+		while (true) {
+			while (pos < limit) {
+				char c = buf[pos];
+				if (inString) {
+					if (c == '"') {
+						inString = false;
+					} else if (c == '\\') {
+						if (pos + 1 >= limit) {
+							break;
+						}
+						pos++;
+					}
+				} else if (c == '"') {
+					inString = true;
+				} else if (c == '{' || c == '[') {
+					level++;
+				} else if ((c == '}' || c == ']') && --level == 0) {
+					tokenOffset = dropped + pos;
+				start = pos++;
+					end = pos;
+					return event = (c == '}') ? JParseEvent.END_OBJECT : JParseEvent.END_ARRAY;
+				}
+				pos++;
+			}
+			start = pos;
+			if (!fill()) {
+				end = pos;
+				return event = null;
+			}
+		}
+	}
+
+	/**
+	 * Scan string up to closing quote. Escape sequences are kept as is.
+	 *
+	 * @throws IOException
+	 *           while reading from stream.
+	 */
+	private void scanString() throws IOException {
+		start = pos;
+		while (true) {
+			while (pos < limit) {
+				char c = buf[pos];
+				if (c == '"') {
+					end = pos++;
+					return;
+				}
+				if (c == '\\') {
+					if (pos + 1 >= limit) {
+						break;
+					}
+					pos += 2;
+					continue;
+				}
+				if (c == '\n' || c == '\r') {
+					hasLineBreaks = true;
+				}
+				pos++;
+			}
+			if (!fill()) {
+				end = pos = limit;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Scan literal value (number, true, false, null).
+	 *
+	 * @throws IOException
+	 *           while reading from stream.
+	 */
+	private void scanLiteral() throws IOException {
+		start = pos;
+		while (true) {
+			while (pos < limit) {
+				if (isTerminator(buf[pos])) {
+					end = pos;
+					return;
+				}
+				pos++;
+			}
+			if (!fill()) {
+				end = pos;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Look ahead after scalar value: ':' turns value into FIELD_NAME, ',' is
+	 * absorbed by the value.
+	 *
+	 * @param valueEvent
+	 *          event of the scanned value.
+	 * @return JParseEvent
+	 * @throws IOException
+	 *           while reading from stream.
+	 */
+	private JParseEvent afterValue(final JParseEvent valueEvent) throws IOException {
+		int c = skipWhitespace(true);
+		comma = false;
+		if (c == ':') {
+			pos++;
+			return JParseEvent.FIELD_NAME;
+		}
+		if (c == ',') {
+			pos++;
+			comma = true;
+		}
+		return valueEvent;
+	}
+
+	@Override
+	String getText() {
+		if (text == null && event != null) {
+			String symbol = SYMBOLS[event.ordinal()];
+			if (symbol != null) {
+				text = symbol;
+			} else if (event == JParseEvent.FIELD_NAME && symbols != null && !hasLineBreaks) {
+				text = symbols.get(buf, start, end);
+			} else if (event == JParseEvent.VALUE_STRING && values != null && !hasLineBreaks) {
+				text = values.get(buf, start, end);
+			} else if (hasLineBreaks) {
+				StringBuilder sb = new StringBuilder(end - start);
+				for (int i = start; i < end; i++) {
+					if (buf[i] != '\n' && buf[i] != '\r') {
+						sb.append(buf[i]);
+					}
+				}
+				text = sb.toString();
+			} else {
+				text = new String(buf, start, end - start);
+			}
+		}
+		return text;
+	}
+
+	@Override
+	int copyText(final char[] dest) {
+		int length = end - start;
+		if (length <= dest.length) {
+			System.arraycopy(buf, start, dest, 0, length);
+		}
+		return length;
+	}
+
+	@Override
+	String flush() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		start = pos;
+		while (pos < limit || fill()) {
+			char c = buf[pos++];
+			if (!isWhitespace(c)) {
+				sb.append(c);
+			}
+			start = pos;
+		}
+		return sb.toString();
+	}
+
+	@Override
+	long getOffset() {
+		return dropped + pos;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (buf != null) {
+			JBufferRecycler.release(buf);
+			buf = null;
+		}
+		if (reader != null) {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,282 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.transform;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.ak.json.JNode;
+import com.ak.json.JParseEvent;
+import com.ak.json.JParserException;
+
+//CSOFF: Magic
+/**
+ * Class JFeedParser is a non blocking parser: application feeds chunks of
+ * UTF-8 encoded text as they arrive (for example from NIO channel) and takes
+ * events or complete documents that are available so far. The parser never
+ * waits for input; if the next token is not complete, it returns
+ * {@link JParseEvent#NEED_MORE_INPUT} (or null from {@link #nextNode()}) and
+ * keeps its state until the next chunk is fed.
+ * <p>
+ * Input is a sequence of JSON documents separated by white spaces, as a
+ * connection delivers messages one after another. Syntax of every document is
+ * checked the same way as JParser does.
+ * <pre>
+ * // in event loop, when channel is readable
+ * channel.read(buffer);
+ * buffer.flip();
+ * feedParser.feed(buffer);
+ * buffer.clear();
+ * JNode message;
+ * while ((message = feedParser.nextNode()) != null) {
+ *   process(message);
+ * }
+ * </pre>
+ * A token that spans several chunks is scanned again from its start when the
+ * next chunk arrives. The parser is not thread safe, but it is not bound to a
+ * thread either: any thread can feed it, one at a time.
+ *
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+public class JFeedParser {
+	/** Initial size of the window. */
+	private static final int INITIAL_BUFFER_SIZE = 4096;
+	/** Shared instance of the signal of tokenizer. */
+	private static final NeedInput NEED_INPUT = new NeedInput();
+
+	/** Bytes fed so far. */
+	private final FeedTokenizer tokenizer = new FeedTokenizer();
+	/** Checks syntax of documents. */
+	private final JPullParser pull;
+	/** Current event. */
+	private JParseEvent event;
+	/** Builder of the current document for nextNode(). */
+	private JTreeBuilder builder;
+
+	/**
+	 * Constructor.
+	 */
+	public JFeedParser() {
+		this(new JParser());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param parser
+	 *          provides limit of nesting and caches of strings. The feed parser
+	 *          gets its own tables of the caches, since it can be fed by any
+	 *          thread.
+	 */
+	public JFeedParser(final JParser parser) {
+		parser.useOwnCaches(tokenizer);
+		this.pull = new JPullParser(tokenizer, parser.getMaxDepth());
+		pull.sequence = true;
+	}
+
+	/**
+	 * Add chunk of input. Remaining bytes of the buffer are copied, position of
+	 * the buffer is moved to its limit.
+	 *
+	 * @param bytes
+	 *          next chunk of UTF-8 encoded text.
+	 * @throws IllegalStateException
+	 *           if end of input was already signaled.
+	 */
+	public void feed(final ByteBuffer bytes) {
+		if (tokenizer.ended) {
+			throw new IllegalStateException("Input is over");
+		}
+		tokenizer.append(bytes);
+	}
+
+	/**
+	 * Signal that there will be no more input. Pending tokens are completed and
+	 * unfinished document is reported as syntax error.
+	 */
+	public void endOfInput() {
+		tokenizer.ended = true;
+	}
+
+	/**
+	 * Move cursor to the next event.
+	 *
+	 * @return JParseEvent, NEED_MORE_INPUT if the next token is not fed yet or
+	 *         null if input is over.
+	 * @throws JParserException
+	 *           if syntax of a document is wrong.
+	 */
+	public JParseEvent nextEvent() throws JParserException {
+		if (event == JParseEvent.NEED_MORE_INPUT && !tokenizer.fed && !tokenizer.ended) {
+			return event;
+		}
+		tokenizer.fed = false;
+		try {
+			return event = pull.nextEvent();
+		} catch (NeedInput e) {
+			return event = JParseEvent.NEED_MORE_INPUT;
+		} catch (IOException e) {
+			throw new JParserException(e);
+		}
+	}
+
+	/**
+	 * Returns the next complete document. Events of the document taken by
+	 * {@link #nextEvent()} before are not included in it.
+	 *
+	 * @return JNode or null if the document is not fed completely yet or input
+	 *         is over.
+	 * @throws JParserException
+	 *           if syntax of the document is wrong.
+	 */
+	public JNode nextNode() throws JParserException {
+		while (true) {
+			JParseEvent e = nextEvent();
+			if (e == null || e == JParseEvent.NEED_MORE_INPUT) {
+				return null;
+			}
+			if (builder == null) {
+				builder = new JTreeBuilder(pull);
+			}
+			JParser.dispatch(pull, e, builder);
+			if (pull.getDepth() == 0) {
+				JNode root = builder.getRoot();
+				builder = null;
+				pull.context = null;
+				return root;
+			}
+		}
+	}
+
+	/**
+	 * Returns the current event.
+	 *
+	 * @return JParseEvent
+	 */
+	public JParseEvent getEvent() {
+		return event;
+	}
+
+	/**
+	 * Returns text of the current token (see {@link JPullParser#getText()}).
+	 *
+	 * @return String or null if there is no current token.
+	 */
+	public String getText() {
+		return (event == JParseEvent.NEED_MORE_INPUT) ? null : pull.getText();
+	}
+
+	/**
+	 * Returns value of the current token as long.
+	 *
+	 * @return long
+	 * @throws JParserException
+	 *           if the value is not an integer number.
+	 */
+	public long getLong() throws JParserException {
+		return pull.getLong();
+	}
+
+	/**
+	 * Returns value of the current token as double.
+	 *
+	 * @return double
+	 * @throws JParserException
+	 *           if the value is not a number.
+	 */
+	public double getDouble() throws JParserException {
+		return pull.getDouble();
+	}
+
+	/**
+	 * Returns number of opened objects and arrays of the current document.
+	 *
+	 * @return int
+	 */
+	public int getDepth() {
+		return pull.getDepth();
+	}
+
+	/**
+	 * Signal of tokenizer that all fed bytes are consumed. Stack trace is not
+	 * filled: the signal is a part of normal flow.
+	 */
+	private static final class NeedInput extends IOException {
+		/** */
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+	}
+
+	/**
+	 * Tokenizer over bytes fed so far. When it runs out of bytes before end of
+	 * input, it rolls back to the start of unfinished token and throws
+	 * NeedInput.
+	 */
+	private static final class FeedTokenizer extends JUtf8Tokenizer {
+		/** True if end of input is signaled. */
+		private boolean ended;
+		/** True if bytes were fed after the last scanning. */
+		private boolean fed;
+
+		/**
+		 * Constructor.
+		 */
+		FeedTokenizer() {
+			super(new byte[INITIAL_BUFFER_SIZE], 0, 0);
+		}
+
+		/**
+		 * Append bytes to the window. Bytes before the current token are dropped.
+		 *
+		 * @param bytes
+		 *          chunk of input.
+		 */
+		void append(final ByteBuffer bytes) {
+			int n = bytes.remaining();
+			compact(n);
+			bytes.get(buf, limit, n);
+			limit += n;
+			fed = true;
+		}
+
+		@Override
+		protected boolean fill() throws IOException {
+			if (ended) {
+				return false;
+			}
+			throw NEED_INPUT;
+		}
+
+		@Override
+		JParseEvent next() throws IOException, JParserException {
+			int mark = pos;
+			try {
+				return super.next();
+			} catch (NeedInput e) {
+				pos = mark;
+				start = mark;
+				throw e;
+			}
+		}
+	}
+}
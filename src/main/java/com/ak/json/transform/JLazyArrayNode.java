@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.transform;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ak.json.JNode;
+import com.ak.json.JParserException;
+import com.ak.json.nodetree.JArrayNode;
+
+/**
+ * Class JLazyArrayNode is JArrayNode that creates its elements from structural
+ * index at first access. Nested objects and arrays are created as lazy nodes
+ * too, so untouched parts of document cost only space of the index. Numbers
+ * and booleans are kept in primitive array as parser does.
+ *
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+class JLazyArrayNode extends JArrayNode {
+	/** Index of document; null when elements are created. */
+	private JStructuralIndex index;
+	/** Index of START token of the node. */
+	private final int token;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pIndex
+	 *          index of document.
+	 * @param pToken
+	 *          index of START token of the node.
+	 */
+	JLazyArrayNode(final JStructuralIndex pIndex, final int pToken) {
+		this.index = pIndex;
+		this.token = pToken;
+	}
+
+	@Override
+	protected void expand() {
+		if (index == null) {
+			return;
+		}
+		JTreeBuilder builder = new JTreeBuilder(null);
+		List<Object> children = new ArrayList<Object>();
+		int last = index.last(token);
+		int i = token + 1;
+		try {
+			while (i < last) {
+				children.add(index.element(i, builder));
+				i = index.last(i) + 1;
+			}
+		} catch (JParserException e) {
+			// index is kept, so the error is thrown again on next access
+			throw new RuntimeException(e.getMessage(), e);
+		}
+		index = null;
+		for (Object child : children) {
+			if (child instanceof Long) {
+				addLong(((Long) child).longValue());
+			} else if (child instanceof Double) {
+				addDouble(((Double) child).doubleValue());
+			} else if (child instanceof Boolean) {
+				addBoolean(((Boolean) child).booleanValue());
+			} else {
+				addNode((JNode) child);
+			}
+		}
+		trimToSize();
+	}
+}
@@ -0,0 +1,427 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.transform;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import com.ak.json.JNode;
+import com.ak.json.JParserException;
+
+/**
+ * Class JLinesParser parses newline delimited JSON (NDJSON, JSON Lines): every
+ * line of input is a separate JSON document. Input is split into chunks
+ * aligned to line ends and chunks are parsed in parallel by Executor; results
+ * are passed to LineHandler in the thread that called parse().
+ * <p>
+ * In ordered mode (default) documents are delivered in order of lines. In
+ * unordered mode a chunk is delivered as soon as it is parsed, documents
+ * inside a chunk keep their order. Empty lines are skipped.
+ * <pre>
+ * JLinesParser lines = new JLinesParser(executor);
+ * lines.setOrdered(false);
+ * lines.parse(file, (lineNumber, node) -&gt; store(node));
+ * </pre>
+ *
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+public class JLinesParser {
+	/** Default size of chunk. */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+	/**
+	 * LineHandler receives parsed documents.
+	 */
+	public interface LineHandler {
+		/**
+		 * Document of one line is parsed.
+		 *
+		 * @param lineNumber
+		 *          number of the line starting from 1.
+		 * @param node
+		 *          JNode tree of the document.
+		 * @throws JParserException
+		 *           to stop parsing.
+		 */
+		void line(long lineNumber, JNode node) throws JParserException;
+	}
+
+	/** Runs parsing of chunks. */
+	private final Executor executor;
+	/** Parses lines. */
+	private final JParser parser = new JParser();
+	/** Size of chunk in bytes. */
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+	/** Maximal number of chunks parsed or waiting for delivery at the same time. */
+	private int maxPending = Runtime.getRuntime().availableProcessors() * 2;
+	/** True if documents are delivered in order of lines. */
+	private boolean ordered = true;
+
+	/**
+	 * Constructor. Chunks are parsed in common ForkJoinPool.
+	 */
+	public JLinesParser() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pExecutor
+	 *          runs parsing of chunks.
+	 */
+	public JLinesParser(final Executor pExecutor) {
+		this.executor = pExecutor;
+	}
+
+	/**
+	 * Returns size of chunk in bytes.
+	 *
+	 * @return int
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Set size of chunk in bytes. A line longer than chunk makes its chunk
+	 * bigger.
+	 *
+	 * @param pChunkSize
+	 *          size of chunk.
+	 */
+	public void setChunkSize(final int pChunkSize) {
+		this.chunkSize = pChunkSize;
+	}
+
+	/**
+	 * Returns maximal number of chunks in work.
+	 *
+	 * @return int
+	 */
+	public int getMaxPending() {
+		return maxPending;
+	}
+
+	/**
+	 * Set maximal number of chunks parsed or waiting for delivery at the same
+	 * time. It limits memory used by parser. Default is twice the number of
+	 * processors.
+	 *
+	 * @param pMaxPending
+	 *          number of chunks.
+	 */
+	public void setMaxPending(final int pMaxPending) {
+		this.maxPending = pMaxPending;
+	}
+
+	/**
+	 * Returns true if documents are delivered in order of lines.
+	 *
+	 * @return boolean
+	 */
+	public boolean isOrdered() {
+		return ordered;
+	}
+
+	/**
+	 * Set order of delivery.
+	 *
+	 * @param pOrdered
+	 *          if true documents are delivered in order of lines, otherwise chunks
+	 *          are delivered as soon as they are parsed.
+	 */
+	public void setOrdered(final boolean pOrdered) {
+		this.ordered = pOrdered;
+	}
+
+	/**
+	 * Returns parser of lines. It can be used to configure parsing, for example
+	 * limit of nesting.
+	 *
+	 * @return JParser
+	 */
+	public JParser getParser() {
+		return parser;
+	}
+
+	/**
+	 * Parse file.
+	 *
+	 * @param file
+	 *          contains JSON documents as UTF-8 encoded lines.
+	 * @param handler
+	 *          receives parsed documents.
+	 * @return number of parsed documents.
+	 * @throws IOException
+	 *           while reading file.
+	 * @throws JParserException
+	 *           while parsing text or if handler stops parsing.
+	 */
+	public long parse(final File file, final LineHandler handler) throws IOException, JParserException {
+		try (InputStream inputStream = new FileInputStream(file)) {
+			return parse(inputStream, handler);
+		}
+	}
+
+	/**
+	 * Parse stream. The stream is not closed.
+	 *
+	 * @param inputStream
+	 *          contains JSON documents as UTF-8 encoded lines.
+	 * @param handler
+	 *          receives parsed documents.
+	 * @return number of parsed documents.
+	 * @throws IOException
+	 *           while reading stream.
+	 * @throws JParserException
+	 *           while parsing text or if handler stops parsing.
+	 */
+	public long parse(final InputStream inputStream, final LineHandler handler)
+			throws IOException, JParserException {
+		ExecutorCompletionService<Chunk> completion = new ExecutorCompletionService<Chunk>(executor);
+		ArrayDeque<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+		final boolean inOrder = ordered;
+		long count = 0;
+		try {
+			byte[] buf = new byte[chunkSize];
+			int length = 0;
+			long firstLine = 1;
+			boolean eof = false;
+			while (!eof) {
+				int n = inputStream.read(buf, length, buf.length - length);
+				if (n < 0) {
+					eof = true;
+				} else {
+					length += n;
+					if (length < buf.length) {
+						continue;
+					}
+				}
+				int cut = length;
+				if (!eof) {
+					cut = lastLineEnd(buf, length);
+					if (cut < 0) {
+						byte[] bigger = new byte[buf.length * 2];
+						System.arraycopy(buf, 0, bigger, 0, length);
+						buf = bigger;
+						continue;
+					}
+				}
+				if (cut == 0) {
+					continue;
+				}
+				byte[] next = new byte[Math.max(chunkSize, length - cut)];
+				System.arraycopy(buf, cut, next, 0, length - cut);
+				final Chunk chunk = new Chunk(buf, cut, firstLine);
+				firstLine += countLines(buf, cut);
+				buf = next;
+				length -= cut;
+
+				if (pending.size() >= maxPending) {
+					count += deliver(inOrder ? pending.poll() : completion.take(), pending, handler);
+				}
+				Callable<Chunk> task = new Callable<Chunk>() {
+					@Override
+					public Chunk call() throws IOException, JParserException {
+						chunk.parse(parser);
+						return chunk;
+					}
+				};
+				if (inOrder) {
+					FutureTask<Chunk> future = new FutureTask<Chunk>(task);
+					executor.execute(future);
+					pending.add(future);
+				} else {
+					pending.add(completion.submit(task));
+				}
+			}
+			while (!pending.isEmpty()) {
+				count += deliver(inOrder ? pending.poll() : completion.take(), pending, handler);
+			}
+			return count;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Parsing of lines is interrupted", e);
+		} finally {
+			for (Future<Chunk> future : pending) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Wait for parsing of chunk and pass its documents to handler.
+	 *
+	 * @param future
+	 *          result of parsing of chunk.
+	 * @param pending
+	 *          chunks in work.
+	 * @param handler
+	 *          receives parsed documents.
+	 * @return number of delivered documents.
+	 * @throws IOException
+	 *           while parsing.
+	 * @throws JParserException
+	 *           while parsing text or if handler stops parsing.
+	 * @throws InterruptedException
+	 *           if waiting is interrupted.
+	 */
+	private static int deliver(final Future<Chunk> future, final ArrayDeque<Future<Chunk>> pending,
+			final LineHandler handler) throws IOException, JParserException, InterruptedException {
+		pending.remove(future);
+		Chunk chunk;
+		try {
+			chunk = future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof JParserException) {
+				throw (JParserException) cause;
+			}
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new JParserException(cause);
+		}
+		for (int i = 0; i < chunk.nodes.size(); i++) {
+			handler.line(chunk.lines[i], chunk.nodes.get(i));
+		}
+		return chunk.nodes.size();
+	}
+
+	/**
+	 * Find end of the last complete line.
+	 *
+	 * @param buf
+	 *          bytes.
+	 * @param length
+	 *          number of bytes.
+	 * @return index after the last '\n' or -1 if there is no line end.
+	 */
+	private static int lastLineEnd(final byte[] buf, final int length) {
+		for (int i = length - 1; i >= 0; i--) {
+			if (buf[i] == '\n') {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Count line ends.
+	 *
+	 * @param buf
+	 *          bytes.
+	 * @param length
+	 *          number of bytes.
+	 * @return int
+	 */
+	private static int countLines(final byte[] buf, final int length) {
+		int n = 0;
+		for (int i = 0; i < length; i++) {
+			if (buf[i] == '\n') {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Chunk of input that contains complete lines and documents parsed from it.
+	 */
+	private static final class Chunk {
+		/** Bytes of lines. */
+		private byte[] bytes;
+		/** Number of bytes. */
+		private final int length;
+		/** Number of the first line. */
+		private final long firstLine;
+		/** Parsed documents. */
+		private final List<JNode> nodes = new ArrayList<JNode>();
+		/** Line numbers of parsed documents. */
+		private long[] lines;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param pBytes
+		 *          bytes of lines.
+		 * @param pLength
+		 *          number of bytes.
+		 * @param pFirstLine
+		 *          number of the first line.
+		 */
+		Chunk(final byte[] pBytes, final int pLength, final long pFirstLine) {
+			this.bytes = pBytes;
+			this.length = pLength;
+			this.firstLine = pFirstLine;
+		}
+
+		/**
+		 * Parse lines of the chunk.
+		 *
+		 * @param parser
+		 *          parses lines.
+		 * @throws IOException
+		 *           while parsing.
+		 * @throws JParserException
+		 *           if a line is not JSON document.
+		 */
+		void parse(final JParser parser) throws IOException, JParserException {
+			long[] numbers = new long[16];
+			long line = firstLine;
+			int from = 0;
+			while (from < length) {
+				int to = from;
+				while (to < length && bytes[to] != '\n') {
+					to++;
+				}
+				try {
+					JNode node = parser.parse(new JUtf8Tokenizer(bytes, from, to - from));
+					if (node != null) {
+						if (nodes.size() == numbers.length) {
+							numbers = Arrays.copyOf(numbers, numbers.length * 2);
+						}
+						numbers[nodes.size()] = line;
+						nodes.add(node);
+					}
+				} catch (JParserException e) {
+					throw new JParserException("Line " + line + ": " + e.getMessage(), e);
+				}
+				from = to + 1;
+				line++;
+			}
+			lines = numbers;
+			bytes = null;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.transform;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+/**
+ * Class JMappedFileTokenizer scans file mapped into memory. File is mapped by
+ * chunks, so files bigger than 2 GB are supported: when the cursor reaches end
+ * of a chunk, next chunk is mapped starting from beginning of the current
+ * token. Pages of the file are served by OS page cache, nothing is copied to
+ * heap except text of tokens.
+ *
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+final class JMappedFileTokenizer extends JBufferTokenizer {
+	/** Default size of mapped chunk. */
+	static final int DEFAULT_CHUNK_SIZE = 1 << 30;
+
+	/** Mapped file. */
+	private final RandomAccessFile file;
+	/** Channel of mapped file. */
+	private final FileChannel channel;
+	/** Size of the file. */
+	private final long size;
+	/** Size of mapped chunk. */
+	private final int chunkSize;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pFile
+	 *          file with UTF-8 encoded JSON document.
+	 * @throws IOException
+	 *           if file cannot be opened or mapped.
+	 */
+	JMappedFileTokenizer(final File pFile) throws IOException {
+		this(new RandomAccessFile(pFile, "r"), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pFile
+	 *          file with UTF-8 encoded JSON document.
+	 * @param pChunkSize
+	 *          size of mapped chunk.
+	 * @throws IOException
+	 *           if file cannot be mapped.
+	 */
+	JMappedFileTokenizer(final RandomAccessFile pFile, final int pChunkSize) throws IOException {
+		super(pFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, Math.min(pFile.length(), pChunkSize)));
+		this.file = pFile;
+		this.channel = pFile.getChannel();
+		this.size = pFile.length();
+		this.chunkSize = pChunkSize;
+	}
+
+	@Override
+	protected boolean fill() throws IOException {
+		long base = dropped + start;
+		if (dropped + limit >= size) {
+			return false;
+		}
+		long length = Math.min(size - base, Math.max(chunkSize, 2L * (limit - start)));
+		setWindow(channel.map(FileChannel.MapMode.READ_ONLY, base, Math.min(length, Integer.MAX_VALUE)));
+		int shift = start;
+		dropped += shift;
+		pos -= shift;
+		end -= shift;
+		start = 0;
+		limit = buf.limit();
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+}
@@ -0,0 +1,672 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.transform;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import com.ak.json.JInstrumentalNode;
+import com.ak.json.JNode;
+import com.ak.json.JParseEvent;
+import com.ak.json.JParserException;
+import com.ak.json.nodetree.JArrayNode;
+import com.ak.json.nodetree.JNodeType;
+import com.ak.json.nodetree.JNumberNode;
+import com.ak.json.nodetree.JValueNode;
+
+//CSOFF: Magic
+/**
+ * Class JParallelParser parses one big JSON document by several threads. The
+ * result is the same JNode tree as JParser builds.
+ * <p>
+ * Parsing goes in three steps:
+ * <ol>
+ * <li>text is split into equal chunks and unescaped quotes are counted in
+ * every chunk in parallel; parity of the counts tells whether a chunk starts
+ * inside a string;</li>
+ * <li>every chunk is moved to start right after ',', '{' or '[' outside of a
+ * string, so no token is split, and chunks are parsed in parallel into
+ * fragments: subtrees closed inside the chunk, members of containers opened
+ * by previous chunks and containers left open for next chunks;</li>
+ * <li>fragments are stitched into one tree in order by the calling thread.</li>
+ * </ol>
+ * Syntax of the document is checked in every fragment and at joints of
+ * fragments. If the check fails, the document is parsed again sequentially,
+ * so error messages are exactly the same as JParser produces.
+ * <pre>
+ * JParallelParser parallel = new JParallelParser(executor);
+ * JNode root = parallel.parse(new File("big.json"));
+ * </pre>
+ *
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+public class JParallelParser {
+	/** Default minimal size of chunk. */
+	public static final int DEFAULT_MIN_CHUNK_SIZE = 1 << 20;
+
+	/** Runs parsing of chunks. */
+	private final Executor executor;
+	/** Parses chunks and small documents. */
+	private final JParser parser = new JParser();
+	/** Number of chunks. */
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	/** Minimal size of chunk in bytes. */
+	private int minChunkSize = DEFAULT_MIN_CHUNK_SIZE;
+
+	/**
+	 * Constructor. Chunks are parsed in common ForkJoinPool.
+	 */
+	public JParallelParser() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pExecutor
+	 *          runs parsing of chunks.
+	 */
+	public JParallelParser(final Executor pExecutor) {
+		this.executor = pExecutor;
+	}
+
+	/**
+	 * Returns number of chunks the document is split to.
+	 *
+	 * @return int
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Set number of chunks the document is split to. Default is number of
+	 * processors.
+	 *
+	 * @param pParallelism
+	 *          number of chunks.
+	 */
+	public void setParallelism(final int pParallelism) {
+		this.parallelism = pParallelism;
+	}
+
+	/**
+	 * Returns minimal size of chunk in bytes.
+	 *
+	 * @return int
+	 */
+	public int getMinChunkSize() {
+		return minChunkSize;
+	}
+
+	/**
+	 * Set minimal size of chunk in bytes. Smaller documents are split to fewer
+	 * chunks; a document smaller than two chunks is parsed sequentially.
+	 *
+	 * @param pMinChunkSize
+	 *          size of chunk.
+	 */
+	public void setMinChunkSize(final int pMinChunkSize) {
+		this.minChunkSize = pMinChunkSize;
+	}
+
+	/**
+	 * Returns parser of chunks. It can be used to configure parsing, for example
+	 * limit of nesting.
+	 *
+	 * @return JParser
+	 */
+	public JParser getParser() {
+		return parser;
+	}
+
+	/**
+	 * Parse file. Whole file is read to memory.
+	 *
+	 * @param file
+	 *          contains JSON document as UTF-8 encoded text.
+	 * @return JNode tree representation of JSON document (root node of tree).
+	 * @throws IOException
+	 *           while reading file.
+	 * @throws JParserException
+	 *           while parsing text.
+	 */
+	public JNode parse(final File file) throws IOException, JParserException {
+		return parse(Files.readAllBytes(file.toPath()));
+	}
+
+	/**
+	 * Parse array of bytes. The array is not copied and must not be changed
+	 * while parsing.
+	 *
+	 * @param text
+	 *          UTF-8 encoded JSON document.
+	 * @return JNode tree representation of JSON document (root node of tree).
+	 * @throws IOException
+	 *           if parsing is interrupted.
+	 * @throws JParserException
+	 *           while parsing text.
+	 */
+	public JNode parse(final byte[] text) throws IOException, JParserException {
+		int chunks = Math.min(parallelism, text.length / Math.max(minChunkSize, 1));
+		if (chunks > 1) {
+			JNode root = parseChunks(text, chunks);
+			if (root != null) {
+				return root;
+			}
+		}
+		return parser.parse(new JUtf8Tokenizer(text, 0, text.length));
+	}
+
+	/**
+	 * Parse chunks of text in parallel and stitch fragments.
+	 *
+	 * @param text
+	 *          UTF-8 encoded JSON document.
+	 * @param chunks
+	 *          number of chunks.
+	 * @return JNode or null if syntax check of fragments fails.
+	 * @throws IOException
+	 *           if parsing is interrupted.
+	 * @throws JParserException
+	 *           if a chunk fails unexpectedly.
+	 */
+	private JNode parseChunks(final byte[] text, final int chunks) throws IOException, JParserException {
+		List<Future<?>> pending = new ArrayList<Future<?>>();
+		try {
+			List<Future<Integer>> counts = new ArrayList<Future<Integer>>();
+			for (int i = 0; i < chunks - 1; i++) {
+				final int from = (int) ((long) text.length * i / chunks);
+				final int to = (int) ((long) text.length * (i + 1) / chunks);
+				counts.add(submit(new Callable<Integer>() {
+					@Override
+					public Integer call() {
+						return Integer.valueOf(countQuotes(text, from, to));
+					}
+				}, pending));
+			}
+			int[] cuts = new int[chunks + 1];
+			boolean inString = false;
+			for (int i = 1; i < chunks; i++) {
+				inString ^= (get(counts.get(i - 1)).intValue() & 1) != 0;
+				cuts[i] = Math.max(cuts[i - 1], cut(text, (int) ((long) text.length * i / chunks), inString));
+			}
+			cuts[chunks] = text.length;
+			List<Future<Fragment>> fragments = new ArrayList<Future<Fragment>>();
+			for (int i = 0; i < chunks; i++) {
+				fragments.add(submit(new Fragment(text, cuts[i], cuts[i + 1], parser), pending));
+			}
+			List<Fragment> parsed = new ArrayList<Fragment>();
+			for (Future<Fragment> future : fragments) {
+				parsed.add(get(future));
+			}
+			pending.clear();
+			return stitch(parsed);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Parallel parsing is interrupted", e);
+		} finally {
+			for (Future<?> future : pending) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Run task by executor.
+	 *
+	 * @param task
+	 *          task.
+	 * @param pending
+	 *          tasks in work.
+	 * @param <T>
+	 *          type of result.
+	 * @return Future
+	 */
+	private <T> Future<T> submit(final Callable<T> task, final List<Future<?>> pending) {
+		FutureTask<T> future = new FutureTask<T>(task);
+		pending.add(future);
+		executor.execute(future);
+		return future;
+	}
+
+	/**
+	 * Wait for result of task.
+	 *
+	 * @param future
+	 *          result of task.
+	 * @param <T>
+	 *          type of result.
+	 * @return result
+	 * @throws JParserException
+	 *           if task fails.
+	 * @throws InterruptedException
+	 *           if waiting is interrupted.
+	 */
+	private static <T> T get(final Future<T> future) throws JParserException, InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new JParserException(cause);
+		}
+	}
+
+	/**
+	 * Join fragments into one tree.
+	 *
+	 * @param fragments
+	 *          parsed chunks in order.
+	 * @return JNode or null if syntax check fails.
+	 */
+	private JNode stitch(final List<Fragment> fragments) {
+		List<JNode> opened = new ArrayList<JNode>();
+		JNode root = null;
+		boolean closed = false;
+		String key = null;
+		JParseEvent last = null;
+		for (Fragment fragment : fragments) {
+			if (fragment.failed) {
+				return null;
+			}
+			if (fragment.first == null) {
+				continue;
+			}
+			if (closed || (last == null && fragment.first != JParseEvent.START_OBJECT
+					&& fragment.first != JParseEvent.START_ARRAY)
+					|| (last != null && !JPullParser.checkPrecedent(fragment.first, last))
+					|| opened.size() + fragment.depth > parser.getMaxDepth()) {
+				return null;
+			}
+			for (Object item : fragment.outer) {
+				JNode top = opened.isEmpty() ? null : opened.get(opened.size() - 1);
+				if (closed) {
+					return null;
+				} else if (item instanceof String) {
+					if (top == null || top.getType() != JNodeType.OBJECT) {
+						return null;
+					}
+					key = (String) item;
+				} else if (item instanceof JParseEvent) {
+					JNodeType kind = (item == JParseEvent.END_OBJECT) ? JNodeType.OBJECT : JNodeType.ARRAY;
+					if (top == null || top.getType() != kind) {
+						return null;
+					}
+					if (top instanceof JArrayNode) {
+						((JArrayNode) top).trimToSize();
+					}
+					opened.remove(opened.size() - 1);
+					closed = opened.isEmpty();
+				} else if (top instanceof JArrayNode && !(item instanceof JNode)) {
+					if (item instanceof Long) {
+						((JArrayNode) top).addLong(((Long) item).longValue());
+					} else if (item instanceof Double) {
+						((JArrayNode) top).addDouble(((Double) item).doubleValue());
+					} else {
+						((JArrayNode) top).addBoolean(((Boolean) item).booleanValue());
+					}
+				} else {
+					JNode node = node(item);
+					if (top == null) {
+						root = node;
+					} else if (top.getType() == JNodeType.OBJECT) {
+						if (key == null) {
+							return null;
+						}
+						top.addNode(((JInstrumentalNode) node).setKey(key));
+						key = null;
+					} else {
+						top.addNode(node);
+					}
+				}
+			}
+			if (closed && fragment.tail) {
+				return null;
+			}
+			opened.addAll(fragment.open);
+			last = fragment.last;
+		}
+		return closed ? root : null;
+	}
+
+	/**
+	 * Returns node of value collected by fragment.
+	 *
+	 * @param item
+	 *          JNode or Long, Double, Boolean of number or boolean value.
+	 * @return JNode
+	 */
+	private static JNode node(final Object item) {
+		if (item instanceof Long) {
+			return JNumberNode.valueOf(((Long) item).longValue());
+		} else if (item instanceof Double) {
+			return JNumberNode.valueOf(((Double) item).doubleValue());
+		} else if (item instanceof Boolean) {
+			return new JValueNode<Boolean>((Boolean) item);
+		}
+		return (JNode) item;
+	}
+
+	/**
+	 * Count quotes that are not escaped.
+	 *
+	 * @param text
+	 *          bytes of document.
+	 * @param from
+	 *          index of first byte of chunk.
+	 * @param to
+	 *          index after last byte of chunk.
+	 * @return int
+	 */
+	static int countQuotes(final byte[] text, final int from, final int to) {
+		ByteBuffer words = ByteBuffer.wrap(text).order(ByteOrder.LITTLE_ENDIAN);
+		int count = 0;
+		int i = from;
+		for (; i + JSwar.WORD <= to; i += JSwar.WORD) {
+			for (long mask = JSwar.quotes(words.getLong(i)); mask != 0; mask &= mask - 1) {
+				if (!escaped(text, i + JSwar.first(mask))) {
+					count++;
+				}
+			}
+		}
+		for (; i < to; i++) {
+			if (text[i] == '"' && !escaped(text, i)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Check if symbol is preceded by odd number of backslashes.
+	 *
+	 * @param text
+	 *          bytes of document.
+	 * @param index
+	 *          index of symbol.
+	 * @return boolean
+	 */
+	private static boolean escaped(final byte[] text, final int index) {
+		int i = index;
+		while (i > 0 && text[i - 1] == '\\') {
+			i--;
+		}
+		return ((index - i) & 1) != 0;
+	}
+
+	/**
+	 * Find start of chunk: position after the first ',', '{' or '[' outside of
+	 * string.
+	 *
+	 * @param text
+	 *          bytes of document.
+	 * @param from
+	 *          start of search.
+	 * @param inString
+	 *          true if from is inside of string.
+	 * @return int
+	 */
+	static int cut(final byte[] text, final int from, final boolean inString) {
+		int i = inString ? skipString(text, from) : from;
+		while (i < text.length) {
+			byte c = text[i++];
+			if (c == '"') {
+				i = skipString(text, i);
+			} else if (c == ',' || c == '{' || c == '[') {
+				return i;
+			}
+		}
+		return text.length;
+	}
+
+	/**
+	 * Skip content of string.
+	 *
+	 * @param text
+	 *          bytes of document.
+	 * @param from
+	 *          position inside of string.
+	 * @return position after closing quote.
+	 */
+	private static int skipString(final byte[] text, final int from) {
+		for (int i = from; i < text.length; i++) {
+			if (text[i] == '"' && !escaped(text, i)) {
+				return i + 1;
+			}
+		}
+		return text.length;
+	}
+
+	/**
+	 * Fragment of tree built from one chunk. Containers opened by previous
+	 * chunks are unknown to the fragment, so their members and ends are
+	 * collected in list "outer".
+	 */
+	private static final class Fragment extends JTreeBuilder implements Callable<Fragment> {
+		/** Bytes of document. */
+		private final byte[] text;
+		/** Index of first byte of chunk. */
+		private final int from;
+		/** Index after last byte of chunk. */
+		private final int to;
+		/** Provides caches of strings. */
+		private final JParser parser;
+		/** Symbols of the current literal value. */
+		private char[] literal = new char[64];
+		/** First token of chunk, null if chunk is empty. */
+		private JParseEvent first;
+		/** Last token of chunk. */
+		private JParseEvent last;
+		/**
+		 * Field names (String), values (JNode, or Long, Double, Boolean for numbers
+		 * and booleans, so arrays keep them without nodes) and ends (END_OBJECT,
+		 * END_ARRAY) of containers opened by previous chunks.
+		 */
+		private final List<Object> outer = new ArrayList<Object>();
+		/** Containers opened in chunk and not closed, outermost first. */
+		private final List<JNode> open = new ArrayList<JNode>();
+		/** Nesting of containers opened in chunk. */
+		private int depth;
+		/** True if there are tokens after the last end of outer container. */
+		private boolean tail;
+		/** True if syntax of chunk is wrong. */
+		private boolean failed;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param pText
+		 *          bytes of document.
+		 * @param pFrom
+		 *          index of first byte of chunk.
+		 * @param pTo
+		 *          index after last byte of chunk.
+		 * @param pParser
+		 *          provides caches of strings.
+		 */
+		Fragment(final byte[] pText, final int pFrom, final int pTo, final JParser pParser) {
+			super(null);
+			this.text = pText;
+			this.from = pFrom;
+			this.to = pTo;
+			this.parser = pParser;
+		}
+
+		@Override
+		public Fragment call() throws IOException {
+			try {
+				scan();
+			} catch (JParserException e) {
+				failed = true;
+			}
+			return this;
+		}
+
+		/**
+		 * Build fragment from tokens of chunk.
+		 *
+		 * @throws IOException
+		 *           never for array of bytes.
+		 * @throws JParserException
+		 *           if syntax of chunk is wrong.
+		 */
+		private void scan() throws IOException, JParserException {
+			if (from > 0 && from < to && text[from] == (byte) 0xEF) {
+				// tokenizer skips byte order mark at the start of its text
+				throw new JParserException("Json syntax : wrong symbol at position " + from);
+			}
+			JUtf8Tokenizer tokenizer = new JUtf8Tokenizer(text, from, to - from);
+			parser.useCaches(tokenizer);
+			int level = 0;
+			JParseEvent token;
+			while ((token = tokenizer.next()) != null) {
+				JNode current = getCurrent();
+				if (first == null) {
+					first = token;
+				}
+				if (!JPullParser.checkTransition(token, last, current)) {
+					throw new JParserException("Json syntax : wrong format <" + last + "," + token + ">");
+				}
+				last = JPullParser.precedent(token, tokenizer);
+				tail = true;
+				switch (token) {
+				case START_OBJECT:
+					startObject();
+					depth = Math.max(depth, ++level);
+					break;
+				case START_ARRAY:
+					startArray();
+					depth = Math.max(depth, ++level);
+					break;
+				case END_OBJECT:
+				case END_ARRAY:
+					tail = current != null;
+					level--;
+					if (token == JParseEvent.END_OBJECT) {
+						endObject();
+					} else {
+						endArray();
+					}
+					break;
+				case FIELD_NAME:
+					fieldName(tokenizer.getText());
+					break;
+				case VALUE:
+					int length = tokenizer.copyText(literal);
+					if (length > literal.length) {
+						literal = new char[length];
+						tokenizer.copyText(literal);
+					}
+					if (!JParser.valueParse(literal, length, this)) {
+						JParser.doubleParse(tokenizer.getText(), this);
+					}
+					break;
+				case VALUE_STRING:
+					value(tokenizer.getText());
+					break;
+				default:
+					break;
+				}
+			}
+			for (JNode node = getCurrent(); node != null; node = node.getParent()) {
+				open.add(0, node);
+			}
+		}
+
+		@Override
+		public void fieldName(final String name) {
+			if (getCurrent() == null) {
+				outer.add(name);
+			} else {
+				super.fieldName(name);
+			}
+		}
+
+		@Override
+		public void endObject() {
+			if (getCurrent() == null) {
+				outer.add(JParseEvent.END_OBJECT);
+			} else {
+				super.endObject();
+			}
+		}
+
+		@Override
+		public void endArray() {
+			if (getCurrent() == null) {
+				outer.add(JParseEvent.END_ARRAY);
+			} else {
+				super.endArray();
+			}
+		}
+
+		@Override
+		public void value(final long value) throws JParserException {
+			if (getCurrent() == null) {
+				outer.add(Long.valueOf(value));
+			} else {
+				super.value(value);
+			}
+		}
+
+		@Override
+		public void value(final double value) throws JParserException {
+			if (getCurrent() == null) {
+				outer.add(Double.valueOf(value));
+			} else {
+				super.value(value);
+			}
+		}
+
+		@Override
+		public void value(final boolean value) throws JParserException {
+			if (getCurrent() == null) {
+				outer.add(Boolean.valueOf(value));
+			} else {
+				super.value(value);
+			}
+		}
+
+		@Override
+		void addValue(final JNode node) throws JParserException {
+			if (getCurrent() == null) {
+				outer.add(node);
+			} else {
+				super.addValue(node);
+			}
+		}
+	}
+}
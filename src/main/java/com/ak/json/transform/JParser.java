@@ -17,58 +17,57 @@
 
 package com.ak.json.transform;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.StringReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
-import com.ak.json.JInstrumentalNode;
 import com.ak.json.JNode;
 import com.ak.json.JParseEvent;
+import com.ak.json.JParseHandler;
 import com.ak.json.JParserException;
-import com.ak.json.nodetree.JArrayNode;
-import com.ak.json.nodetree.JObjectNode;
-import com.ak.json.nodetree.JValueNode;
 
 //CSOFF: Magic
 /**
  * Class JParser converts textual representation of a Json document to tree of
- * JNode nodes.
+ * JNode nodes. Parser can also pass events of the document to an application
+ * supplied {@link JParseHandler} without building the tree.
+ * <p>
+ * JParser is thread safe: state of parsing is created for every call, so one
+ * instance can be shared by any number of threads. Windows of tokenizers are
+ * reused between calls in the same thread (see {@link JBufferRecycler}), and
+ * every thread has its own tables of string caches (see {@link JSymbolTable}),
+ * so no locking is needed. Settings take effect for calls started after the
+ * change.
  *
  * @author krasnop@bellsouth.net (Alexei Krasnopolski)
  *
  */
 public class JParser {
-	/**
-	 * The matrix allows to check: is it possible to have sequence of two events
-	 * during parsing? If checkEvents[previusEvent][currentEvent] == true then the
-	 * test is pass.
-	 */
-	private static boolean[][] checkEvents;
-	static {
-		checkEvents = new boolean[][] {
-			// START_OBJECT START_ARRAY END_OBJECT END_ARRAY FIELD_NAME VALUE
-			// VALUE_STRING DELIMITER
-			// [0] [1] [2] [3] [4] [5] [6] [7]
-			/* START_OBJECT [0] */ { false, false, true, false, true, false, false,
-				false },
-			/* START_ARRAY [1] */ { true, true, false, true, false, true, true,
-					false },
-			/* END_OBJECT [2] */ { false, false, true, true, false, false, false,
-						true },
-			/* END_ARRAY [3] */ { false, false, true, true, false, false, false,
-							true },
-			/* FIELD_NAME [4] */ { true, true, false, false, false, true, true,
-								false },
-			/* VALUE [5] */ { true, true, true, true, true, true, true, false },
-			/* VALUE_STRING [6] */ { true, true, true, true, true, true, true,
-				false },
-			/* DELIMITER [7] */ { true, true, false, false, true, true, true,
-					false } };
-	}
+	/** Default limit of nesting of objects and arrays. */
+	public static final int DEFAULT_MAX_DEPTH = 10000;
+
+	/** Mantissa of double is exact below the value. */
+	private static final long MAX_EXACT = 1L << 53;
+	/** Powers of 10 that are exact doubles. */
+	private static final double[] POWERS_OF_10 = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	/** Default number of slots of field names cache. */
+	public static final int DEFAULT_KEY_CACHE_SIZE = 1024;
+
+	/** Limit of nesting of objects and arrays. */
+	private volatile int maxDepth = DEFAULT_MAX_DEPTH;
+	/** Cache of field names. Null if names are not cached. */
+	private volatile JSymbolTable.PerThread keys = new JSymbolTable.PerThread(DEFAULT_KEY_CACHE_SIZE);
+	/** Cache of string values. Null if values are not cached. */
+	private volatile JSymbolTable.PerThread values;
 
 	/**
 	 * Default constructor.
@@ -76,6 +75,90 @@ public class JParser {
 	public JParser() {
 	}
 
+	/**
+	 * Returns limit of nesting of objects and arrays.
+	 *
+	 * @return int
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Set limit of nesting of objects and arrays. Parser throws JParserException
+	 * if a document is nested deeper.
+	 *
+	 * @param pMaxDepth
+	 *          the limit.
+	 */
+	public void setMaxDepth(final int pMaxDepth) {
+		this.maxDepth = pMaxDepth;
+	}
+
+	/**
+	 * Returns number of slots of field names cache, 0 if the cache is off.
+	 *
+	 * @return int
+	 */
+	public int getKeyCacheSize() {
+		JSymbolTable.PerThread k = keys;
+		return (k == null) ? 0 : k.size();
+	}
+
+	/**
+	 * Set number of slots of field names cache. Parser returns the same String
+	 * instance for equal field names found in cache, so documents with many
+	 * records keep one copy of each key. The cache is bounded: names that do not
+	 * fit are replaced. The cache is kept between parse() calls; every thread
+	 * has its own table of the given size.
+	 *
+	 * @param size
+	 *          number of slots (rounded up to power of 2), 0 turns the cache off.
+	 */
+	public void setKeyCacheSize(final int size) {
+		this.keys = (size > 0) ? new JSymbolTable.PerThread(size) : null;
+	}
+
+	/**
+	 * Returns statistics of field names cache summed over tables of all
+	 * threads.
+	 *
+	 * @return JCacheStats or null if the cache is off.
+	 */
+	public JCacheStats getKeyCacheStats() {
+		JSymbolTable.PerThread k = keys;
+		return (k == null) ? null : k.stats();
+	}
+
+	/**
+	 * Turn on cache of string values. Equal string values found in cache share
+	 * one String instance, it saves heap for documents with repeated enum-like
+	 * values (currency, status, country codes). Only values not longer than
+	 * maxLength are cached. The cache is bounded: values that do not fit are
+	 * replaced. The cache is kept between parse() calls; every thread has its
+	 * own table of the given size. Calling the method again creates new empty
+	 * cache.
+	 *
+	 * @param size
+	 *          number of slots (rounded up to power of 2), 0 turns the cache off.
+	 * @param maxLength
+	 *          longest cached value.
+	 */
+	public void setValueCache(final int size, final int maxLength) {
+		this.values = (size > 0) ? new JSymbolTable.PerThread(size, maxLength) : null;
+	}
+
+	/**
+	 * Returns statistics of string values cache: hit ratio and estimated size of
+	 * saved heap, summed over tables of all threads.
+	 *
+	 * @return JCacheStats or null if the cache is off.
+	 */
+	public JCacheStats getValueCacheStats() {
+		JSymbolTable.PerThread v = values;
+		return (v == null) ? null : v.stats();
+	}
+
 	/**
 	 * Parse file.
 	 *
@@ -88,15 +171,34 @@ public class JParser {
 	 *           while parsing text.
 	 */
 	public JNode parse(final File file) throws IOException, JParserException {
-		return parse(new BufferedReader(
-				new InputStreamReader(new FileInputStream(file), "utf-8")));
+		return parse(new JUtf8Tokenizer(new FileInputStream(file)));
+	}
+
+	/**
+	 * Parse file mapped into memory. The file is tokenized directly from mapped
+	 * buffer, so repeated parsing of the same file is served by OS page cache
+	 * without reading it through heap buffers. Files bigger than 2 GB are mapped
+	 * by chunks. Note that mapped buffer is released by garbage collector, not
+	 * when parsing is finished.
+	 *
+	 * @param file
+	 *          contains JSON document as UTF-8 encoded text.
+	 * @return JNode tree representation of JSON document (root node of tree).
+	 * @throws IOException
+	 *           while reading file.
+	 * @throws JParserException
+	 *           while parsing text.
+	 */
+	public JNode parseMapped(final File file) throws IOException, JParserException {
+		return parse(new JMappedFileTokenizer(file));
 	}
 
 	/**
-	 * Parse document from stream.
+	 * Parse document from stream. The stream is scanned as UTF-8 bytes, only
+	 * strings and values are decoded.
 	 *
 	 * @param inputStream
-	 *          contains JSON document as a text.
+	 *          contains JSON document as UTF-8 encoded text.
 	 * @return JNode tree representation of JSON document (root node of tree).
 	 * @throws IOException
 	 *           while reading file.
@@ -105,8 +207,24 @@ public class JParser {
 	 */
 	public JNode parse(final InputStream inputStream)
 			throws IOException, JParserException {
-		return parse(
-				new BufferedReader(new InputStreamReader(inputStream, "utf-8")));
+		return parse(new JUtf8Tokenizer(inputStream));
+	}
+
+	/**
+	 * Parse document from reader. Use it for documents in encoding other than
+	 * UTF-8.
+	 *
+	 * @param reader
+	 *          contains JSON document as a text.
+	 * @return JNode tree representation of JSON document (root node of tree).
+	 * @throws IOException
+	 *           while reading file.
+	 * @throws JParserException
+	 *           while parsing text.
+	 */
+	public JNode parse(final Reader reader)
+			throws IOException, JParserException {
+		return parse(new JCharTokenizer(reader));
 	}
 
 	/**
@@ -122,585 +240,601 @@ public class JParser {
 	 */
 	public JNode parse(final String jsonText)
 			throws JParserException, IOException {
-		return parse(new BufferedReader(new StringReader(jsonText)));
+		return parse(new JCharTokenizer(jsonText));
 	}
 
 	/**
-	 * Parse document from buffered reader.
+	 * Parse sequence of symbols in place, without copying it to a window. The
+	 * sequence must not be changed while it is parsed.
 	 *
-	 * @param reader
+	 * @param jsonText
 	 *          contains JSON document as a text.
 	 * @return JNode tree representation of JSON document (root node of tree).
 	 * @throws IOException
-	 *           while reading file.
+	 *           while reading text.
 	 * @throws JParserException
 	 *           while parsing text.
 	 */
-	private JNode parse(final BufferedReader reader)
+	public JNode parse(final CharSequence jsonText)
 			throws JParserException, IOException {
-		try {
-			Counters levels = new Counters();
-			recurLvl = 0;
-			JNode result = parse(null, null, reader, levels, null);
-			if (levels.getArrayLevel() != 0 || levels.getObjectLevel() != 0) {
-				throw new JParserException(
-						"Json syntax : opened parentheses do not match closed parentheses. Difference: "
-								+ "'{' = " + levels.getObjectLevel() + " '[' = "
-								+ levels.getArrayLevel());
-			}
-			return result;
-		} finally {
-			if (reader != null) {
-				reader.close();
-			}
-		}
+		return parse(new JCharSequenceTokenizer(jsonText));
 	}
 
 	/**
-	 * Extract from reader stream sequence of symbols that represents JSON string
-	 * term.
+	 * Parse remaining bytes of buffer in place. Heap, direct and mapped buffers
+	 * are scanned without copying; position of the buffer is not changed. The
+	 * content must not be changed while it is parsed.
 	 *
-	 * @param reader
-	 *          is stream of symbols.
-	 * @return String
+	 * @param buffer
+	 *          contains JSON document as UTF-8 encoded text from position to
+	 *          limit.
+	 * @return JNode tree representation of JSON document (root node of tree).
 	 * @throws IOException
-	 *           while reading from stream.
-	 */
-	private String readString(final BufferedReader reader) throws IOException {
-		int code;
-		char symbol;
-		boolean escape = false;
-		StringBuffer sb = new StringBuffer();
-		while ((code = reader.read()) >= 0) {
-			symbol = (char) code;
-			switch (symbol) {
-			case '"':
-				if (escape) {
-					sb.append(symbol);
-					escape = false;
-				} else {
-					return sb.toString();
-				}
-				break;
-			case '\\':
-				sb.append(symbol);
-				escape = true;
-				break;
-			case '\n':
-			case '\r':
-				break; // TODO throw exception
-			default:
-				sb.append(symbol);
-				escape = false;
-				break;
-			}
+	 *           while reading text.
+	 * @throws JParserException
+	 *           while parsing text.
+	 */
+	public JNode parse(final ByteBuffer buffer)
+			throws JParserException, IOException {
+		if (buffer.hasArray()) {
+			return parse(new JUtf8Tokenizer(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining()));
 		}
-		return sb.toString();
+		return parse(new JBufferTokenizer(buffer));
 	}
 
 	/**
-	 * After parsing the method checks a tail of file/stream/string for unexpected
-	 * symbols and returns it.
+	 * Parse document from blocking channel. The channel reads into a direct
+	 * buffer which is reused by following calls in the same thread. The channel
+	 * is closed at the end.
 	 *
-	 * @param reader
-	 *          is stream of symbols.
-	 * @return String
+	 * @param channel
+	 *          contains JSON document as UTF-8 encoded text.
+	 * @return JNode tree representation of JSON document (root node of tree).
 	 * @throws IOException
-	 *           while reading from stream.
-	 */
-	private String flushStream(final BufferedReader reader) throws IOException {
-		int code;
-		char symbol;
-		StringBuffer sb = new StringBuffer();
-		while ((code = reader.read()) >= 0) {
-			symbol = (char) code;
-			switch (symbol) {
-			case '\n':
-			case '\r':
-			case '\t':
-			case ' ':
-				break;
-			default:
-				sb.append(symbol);
-				break;
-			}
-		}
-		return sb.toString();
+	 *           while reading from channel.
+	 * @throws JParserException
+	 *           while parsing text.
+	 * @throws IllegalArgumentException
+	 *           if the channel is in non blocking mode (see JFeedParser).
+	 */
+	public JNode parse(final ReadableByteChannel channel)
+			throws JParserException, IOException {
+		return parse(new JChannelTokenizer(channel));
 	}
 
 	/**
-	 * Read one or more symbols from reader, then generates and returns parser
-	 * event as JsonPace object.
+	 * Parse file and build only parts of the tree selected by projection. Other
+	 * parts are skipped without creating nodes: only their brackets and bounds
+	 * of strings are matched, syntax inside them is not checked, so a document
+	 * that is wrong in skipped parts can be accepted.
 	 *
-	 * @param reader
-	 *          is stream of symbols.
-	 * @return JsonPace
+	 * @param file
+	 *          contains JSON document as UTF-8 encoded text.
+	 * @param projection
+	 *          selects parts of document.
+	 * @return JNode root of projected tree or null if nothing is selected.
 	 * @throws IOException
-	 *           while reading from stream.
+	 *           while reading file.
 	 * @throws JParserException
-	 *           while parsing document.
+	 *           while parsing text.
 	 */
-	private JsonPace read(final BufferedReader reader)
-			throws IOException, JParserException {
-		char symbol;
-		boolean isArrayEnd;
-		JParseEvent predictedEvent = null;
-		StringBuffer value = new StringBuffer();
-		while (true) {
-			reader.mark(100);
-			int s = reader.read();
-			if (s < 0) {
-				break;
-			}
-			symbol = (char) s;
-			isArrayEnd = false;
-			switch (symbol) {
-			case '[':
-				return new JsonPace(JParseEvent.START_ARRAY, "[");
-			case '{':
-				return new JsonPace(JParseEvent.START_OBJECT, "{");
-			case ']':
-				isArrayEnd = true;
-				//$FALL-THROUGH$
-			case '}':
-				if (!(value.length() == 0
-				&& predictedEvent != JParseEvent.VALUE_STRING)) {
-					reader.reset();
-					return new JsonPace(predictedEvent, value.toString());
-				}
-				return (isArrayEnd) ? (new JsonPace(JParseEvent.END_ARRAY, "]"))
-						: (new JsonPace(JParseEvent.END_OBJECT, "}"));
-			case '"':
-				value.append(readString(reader));
-				predictedEvent = JParseEvent.VALUE_STRING;
-				break;
-			case ',':
-				if (predictedEvent == JParseEvent.VALUE_STRING
-				|| (predictedEvent == JParseEvent.VALUE && value.length() != 0)) {
-					return new JsonPace(predictedEvent, value.toString()); // temporarily
-				}
-				return new JsonPace(JParseEvent.DELIMITER, ",");
-			case ':':
-				if (value.length() != 0) {
-					return new JsonPace(JParseEvent.FIELD_NAME, value.toString());
-				}
-				throw new JParserException(
-						"Json syntax : unexpected symbol '" + symbol + "'");
-			case ' ':
-			case '\n':
-			case '\r':
-			case '\t':
-			case '\b':
-			case '\f':
-				break;
-			default:
-				value.append(symbol);
-				predictedEvent = JParseEvent.VALUE;
-			}
-		}
-		if (predictedEvent != null && (predictedEvent == JParseEvent.VALUE_STRING
-				|| predictedEvent == JParseEvent.VALUE)) {
-			return new JsonPace(predictedEvent, value.toString());
-		}
-		return null;
+	public JNode parse(final File file, final JProjection projection) throws IOException, JParserException {
+		return parse(new JUtf8Tokenizer(new FileInputStream(file)), projection);
 	}
 
-	private int recurLvl = 0;
+	/**
+	 * Parse document from stream and build only parts of the tree selected by
+	 * projection. See {@link #parse(File, JProjection)}.
+	 *
+	 * @param inputStream
+	 *          contains JSON document as UTF-8 encoded text.
+	 * @param projection
+	 *          selects parts of document.
+	 * @return JNode root of projected tree or null if nothing is selected.
+	 * @throws IOException
+	 *           while reading stream.
+	 * @throws JParserException
+	 *           while parsing text.
+	 */
+	public JNode parse(final InputStream inputStream, final JProjection projection)
+			throws IOException, JParserException {
+		return parse(new JUtf8Tokenizer(inputStream), projection);
+	}
 
 	/**
-	 * The method parse() is recursive function that processes one parsing event.
-	 * Recursion stops when it completes parsing all child of root JSON element.
+	 * Parse document from reader and build only parts of the tree selected by
+	 * projection. See {@link #parse(File, JProjection)}.
 	 *
-	 * @param current
-	 *          node of tree generated from parsed text.
-	 * @param savedKey
-	 *          key saved during FIELD_NAME event to use it create current node.
 	 * @param reader
-	 *          is stream of symbols.
-	 * @param levels
-	 *          is Counters object that counts brackets in parsed JSON document.
-	 * @param lastEvent
-	 *          previously processed parsing event.
-	 * @return JNode root node of generated tree.
+	 *          contains JSON document as a text.
+	 * @param projection
+	 *          selects parts of document.
+	 * @return JNode root of projected tree or null if nothing is selected.
+	 * @throws IOException
+	 *           while reading text.
 	 * @throws JParserException
-	 *           during parsing step.
-	 */
-	private JNode parse(
-			JNode current,
-			final String savedKeyPar,
-			final BufferedReader reader,
-			final Counters levels,
-			final JsonPace lastJsonPacePar
-			) throws JParserException {
-		JsonPace jp = null;
-		String savedKey = savedKeyPar;
-		JsonPace lastJsonPace = lastJsonPacePar;
-		JNode returnNode = null;
-
-//    System.out.println(">>> parse() recurLvl:" + (recurLvl++));
-
-		do {
-			try {
-				jp = read(reader);
-			} catch (IOException e) {
-				e.printStackTrace(); // TODO replace with exception.
-			}
-/*
-      System.out.println("--> parse.LOOP\n current jp:" + jp + "\n lastJsonPace:" + lastJsonPace + "\n counters:" + levels + "\n current node: " + current);
-      if (current != null && current.getParent() != null) {
-        System.out.println("   parent: " + current.getParent());
-      } else {
-        System.out.println("   parent: null");
-      }
-      System.out.println();
- */
-			if (jp != null) {
-				JParseEvent jtoken = jp.event;
-				if (!checkPrecedent(jtoken, (lastJsonPace != null) ? lastJsonPace.event : null)) {
-					String message = "";
-					if (current != null && current.getParent() != null) {
-						message = " near " + current.getParent().toJson();
-					}
-					if (jtoken == JParseEvent.DELIMITER) {
-						throw new JParserException(
-								"Json syntax : wrong position for ','" + message);
-					}
-					throw new JParserException("Json syntax : wrong format" + message
-							+ " <" + lastJsonPace.event + "," + jtoken + ">");
-				}
-
-				switch (jtoken) {
-				case START_ARRAY:
-					JNode newArrayNode = new JArrayNode();
-					if (current != null) {
-						current.addNode(((JInstrumentalNode) newArrayNode).setKey(savedKey));
-					}
-					returnNode = parse(newArrayNode, null, reader, levels.startArr(), jp);
-					lastJsonPace = new JsonPace(JParseEvent.END_ARRAY, "]");
-//          if (returnNode != null && returnNode.getParent() != null) {
-					if (levels.getLevel() > 0) {
-						continue;
-					}
-					break;
-				case START_OBJECT:
-					JNode newObjectNode = new JObjectNode();
-					if (current != null) {
-						current.addNode(((JInstrumentalNode) newObjectNode).setKey(savedKey));
-					}
-					returnNode = parse(newObjectNode, null, reader, levels.startObj(), jp);
-					lastJsonPace = new JsonPace(JParseEvent.END_OBJECT, "}");
-//          if (returnNode != null && returnNode.getParent() != null) {
-					if (levels.getLevel() > 0) {
-						continue;
-					}
-					break;
-				case END_ARRAY:
-					levels.endArr();
-					if (levels.getArrayLevel() < 0) {
-						throw new JParserException(
-								"Json syntax : wrong symbol ] after " + current.toJson() + jp.value);
-					}
-//          System.out.println("<<< parse(.) recurLvl:" + (--recurLvl));
-					return current;
-				case END_OBJECT:
-					levels.endObj();
-					if (levels.getObjectLevel() < 0) {
-						throw new JParserException(
-								"Json syntax : wrong symbol } after " + current.toJson() + jp.value);
-					}
-//          System.out.println("<<< parse(..) recurLvl:" + (--recurLvl));
-					return current;
-				case FIELD_NAME:
-					lastJsonPace = jp;
-					savedKey = jp.value;
-					continue;
-				case VALUE_STRING:
-				case VALUE:
-					if (current != null) {
-						current.addNode(((JInstrumentalNode) valueParse(jp)).setKey(savedKey));
-					} else {
-						current = returnNode = valueParse(jp);
-					}
-					lastJsonPace = jp;
-					continue;
-				case DELIMITER:
-					lastJsonPace = jp;
-					continue;
-				default:
-					String message = "";
-					if (current != null && current.getParent() != null) {
-						message = " near " + current.getParent().toJson();
-					}
-					throw new JParserException("Unknown parsing event" + message);
-				}
-				current = returnNode;
-				break;
-			} else {
-				current = returnNode;
-				break;
-			}
-		} while (true);
-
-		try {
-			String message = flushStream(reader);
-			if (message.length() == 0) {
-//        System.out.println("<<< parse(...) recurLvl:" + (--recurLvl));
-				return current;
-			}
-			throw new JParserException(
-					"Unexpected symbol(s) near end of document '" + lastJsonPace.value + message + "'.");
-		} catch (IOException e) {
-			throw new JParserException(e);
-		}
+	 *           while parsing text.
+	 */
+	public JNode parse(final Reader reader, final JProjection projection)
+			throws IOException, JParserException {
+		return parse(new JCharTokenizer(reader), projection);
 	}
 
 	/**
-	 * Parse value of OBJECT property.
+	 * Parse string and build only parts of the tree selected by projection. See
+	 * {@link #parse(File, JProjection)}.
 	 *
-	 * @param jp
-	 *          represents current parsing event
-	 * @return JNode
+	 * @param jsonText
+	 *          contains JSON document as a text.
+	 * @param projection
+	 *          selects parts of document.
+	 * @return JNode root of projected tree or null if nothing is selected.
+	 * @throws IOException
+	 *           while reading text.
+	 * @throws JParserException
+	 *           while parsing text.
 	 */
-	private JNode valueParse(final JsonPace jp) {
-		try {
-			JNode value = new JValueNode<Object>();
-			if (jp.event == JParseEvent.VALUE_STRING) {
-				value = new JValueNode<String>(jp.value);
-			} else {
-				switch (jp.value) {
-				case "null":
-					break;
-				case "true":
-				case "false":
-					value = new JValueNode<Boolean>(new Boolean(jp.value));
-					break;
-				default:
-					if (jp.value.matches("^[\\-\\+]?\\d+$")) {
-						try {
-							value = new JValueNode<Integer>(Integer.valueOf(jp.value));
-						} catch (NumberFormatException e) {
-							try {
-								value = new JValueNode<Long>(Long.valueOf(jp.value));
-							} catch (NumberFormatException e1) {
-								throw new JParserException(e1);
-							}
-						}
-					} else {
-						try {
-							Float fv = Float.valueOf(jp.value);
-							if (fv.isInfinite())
-								throw new NumberFormatException("Too big for float");
-							value = new JValueNode<Float>(fv);
-						} catch (NumberFormatException e) {
-							try {
-								Double dv = Double.valueOf(jp.value);
-								value = new JValueNode<Double>(dv);
-							} catch (NumberFormatException e1) {
-								throw new JParserException(e1);
-							}
-						}
-					}
-					break;
-				}
-			}
-			return value;
-		} catch (Exception e) {
-			e.printStackTrace(); // TODO replace with exception.
-		}
-		return null;
+	public JNode parse(final String jsonText, final JProjection projection)
+			throws IOException, JParserException {
+		return parse(new JCharTokenizer(jsonText), projection);
 	}
 
 	/**
-	 * Check if two events are happened in right sequence.
+	 * Parse document lazily. The method makes one pass over the text to check
+	 * syntax and literal values and to build structural index of the document
+	 * (positions of tokens in primitive arrays). Returned objects and arrays
+	 * create their children only when they are accessed first time, so
+	 * untouched subtrees cost only space of the index. The array must not be
+	 * changed while the tree is used. Lazy tree is not thread safe even for
+	 * reading.
 	 *
-	 * @param currentEvent
-	 *          current event.
-	 * @param lastEvent
-	 *          previous event.
-	 * @return true if sequence is allowed.
-	 */
-	private boolean checkPrecedent(
-			final JParseEvent currentEvent,
-			final JParseEvent lastEvent
-			) {
-		if (lastEvent == null) {
-			return true;
+	 * @param jsonText
+	 *          contains JSON document as UTF-8 encoded text.
+	 * @return JNode tree representation of JSON document (root node of tree).
+	 * @throws IOException
+	 *           while reading text.
+	 * @throws JParserException
+	 *           while parsing text.
+	 */
+	public JNode parseLazy(final byte[] jsonText) throws IOException, JParserException {
+		JStructuralIndex index = JStructuralIndex.build(jsonText, maxDepth, keys, values);
+		if (index.size() == 0) {
+			return null;
 		}
-		return checkEvents[lastEvent.ordinal()][currentEvent.ordinal()];
+		return index.node(0, new JTreeBuilder(null));
 	}
 
 	/**
-	 * Helper class JsonPace represents a pair of parsing event and corresponded
-	 * value if applicable.
-	 *
-	 * @author alexeikrasnopolski
+	 * Parse string lazily. See {@link #parseLazy(byte[])}.
 	 *
+	 * @param jsonText
+	 *          contains JSON document as a text.
+	 * @return JNode tree representation of JSON document (root node of tree).
+	 * @throws IOException
+	 *           while reading text.
+	 * @throws JParserException
+	 *           while parsing text.
 	 */
-	private class JsonPace {
-		/** Parsing event. */
-		protected JParseEvent event;
-		/** Value associated with the event. (if applicable) */
-		protected String value;
+	public JNode parseLazy(final String jsonText) throws IOException, JParserException {
+		return parseLazy(jsonText.getBytes(StandardCharsets.UTF_8));
+	}
 
-		/**
-		 * Constructor.
-		 *
-		 * @param pEvent
-		 *          parsing event.
-		 * @param pValue
-		 *          associated value.
-		 */
-		public JsonPace(final JParseEvent pEvent, final String pValue) {
-			this.event = pEvent;
-			this.value = pValue;
-		}
+	/**
+	 * Parse file lazily. Whole file is read into memory. See
+	 * {@link #parseLazy(byte[])}.
+	 *
+	 * @param file
+	 *          contains JSON document as UTF-8 encoded text.
+	 * @return JNode tree representation of JSON document (root node of tree).
+	 * @throws IOException
+	 *           while reading file.
+	 * @throws JParserException
+	 *           while parsing text.
+	 */
+	public JNode parseLazy(final File file) throws IOException, JParserException {
+		return parseLazy(Files.readAllBytes(file.toPath()));
+	}
 
-		@Override
-		public String toString() {
-			return "Pace: event=" + event.toString() + ", value='" + value + "'";
-		}
+	/**
+	 * Parse file and pass events of the document to handler. JNode tree is not
+	 * built.
+	 *
+	 * @param file
+	 *          contains JSON document as UTF-8 encoded text.
+	 * @param handler
+	 *          receives events of the document.
+	 * @throws IOException
+	 *           while reading file.
+	 * @throws JParserException
+	 *           while parsing text or if handler stops parsing.
+	 */
+	public void parse(final File file, final JParseHandler handler)
+			throws IOException, JParserException {
+		parse(new JUtf8Tokenizer(new FileInputStream(file)), handler);
 	}
 
 	/**
-	 * Helper class Counters counts number of brackets in JSON document.
+	 * Parse document from stream and pass events of the document to handler.
+	 * JNode tree is not built.
 	 *
-	 * @author alexeikrasnopolski
+	 * @param inputStream
+	 *          contains JSON document as UTF-8 encoded text.
+	 * @param handler
+	 *          receives events of the document.
+	 * @throws IOException
+	 *           while reading file.
+	 * @throws JParserException
+	 *           while parsing text or if handler stops parsing.
+	 */
+	public void parse(final InputStream inputStream, final JParseHandler handler)
+			throws IOException, JParserException {
+		parse(new JUtf8Tokenizer(inputStream), handler);
+	}
+
+	/**
+	 * Parse document from reader and pass events of the document to handler.
+	 * JNode tree is not built.
 	 *
+	 * @param reader
+	 *          contains JSON document as a text.
+	 * @param handler
+	 *          receives events of the document.
+	 * @throws IOException
+	 *           while reading file.
+	 * @throws JParserException
+	 *           while parsing text or if handler stops parsing.
 	 */
-	private class Counters {
-		/** Difference between opened and closed curly brackets. */
-		private Counter curly;
-		/** Difference between opened and closed square brackets. */
-		private Counter square;
+	public void parse(final Reader reader, final JParseHandler handler)
+			throws IOException, JParserException {
+		parse(new JCharTokenizer(reader), handler);
+	}
 
-		/**
-		 * Default constructor.
-		 */
-		Counters() {
-			curly = new Counter();
-			square = new Counter();
-		}
+	/**
+	 * Parse string and pass events of the document to handler. JNode tree is not
+	 * built.
+	 *
+	 * @param jsonText
+	 *          contains JSON document as a text.
+	 * @param handler
+	 *          receives events of the document.
+	 * @throws IOException
+	 *           while reading file.
+	 * @throws JParserException
+	 *           while parsing text or if handler stops parsing.
+	 */
+	public void parse(final String jsonText, final JParseHandler handler)
+			throws IOException, JParserException {
+		parse(new JCharTokenizer(jsonText), handler);
+	}
 
-		/**
-		 * Action when OBJECT starts.
-		 *
-		 * @return this
-		 */
-		Counters startObj() {
-			curly.increment();
-			return this;
-		}
+	/**
+	 * Parse document from tokenizer to JNode tree.
+	 *
+	 * @param tokenizer
+	 *          splits JSON document into tokens.
+	 * @return JNode tree representation of JSON document (root node of tree).
+	 * @throws IOException
+	 *           while reading file.
+	 * @throws JParserException
+	 *           while parsing text.
+	 */
+	JNode parse(final JTokenizer tokenizer)
+			throws JParserException, IOException {
+		useCaches(tokenizer);
+		JPullParser pull = new JPullParser(tokenizer, maxDepth);
+		JTreeBuilder builder = new JTreeBuilder(pull);
+		drive(pull, builder);
+		return builder.getRoot();
+	}
 
-		/**
-		 * Action when OBJECT ends.
-		 *
-		 * @return this
-		 */
-		Counters endObj() {
-			curly.decrement();
-			return this;
+	/**
+	 * Parse document from tokenizer to projected JNode tree.
+	 *
+	 * @param tokenizer
+	 *          splits JSON document into tokens.
+	 * @param projection
+	 *          selects parts of document.
+	 * @return JNode root of projected tree or null if nothing is selected.
+	 * @throws IOException
+	 *           while reading file.
+	 * @throws JParserException
+	 *           while parsing text.
+	 */
+	private JNode parse(final JTokenizer tokenizer, final JProjection projection)
+			throws JParserException, IOException {
+		useCaches(tokenizer);
+		JPullParser pull = new JPullParser(tokenizer, maxDepth);
+		JTreeBuilder builder = new JTreeBuilder(pull);
+		try {
+			projection.parse(pull, builder);
+		} finally {
+			pull.close();
 		}
+		return builder.getRoot();
+	}
 
-		/**
-		 * Action when ARRAY starts.
-		 *
-		 * @return this
-		 */
-		Counters startArr() {
-			square.increment();
-			return this;
-		}
+	/**
+	 * Make tokenizer use caches of field names and string values of the parser.
+	 *
+	 * @param tokenizer
+	 *          splits JSON document into tokens.
+	 */
+	void useCaches(final JTokenizer tokenizer) {
+		JSymbolTable.PerThread k = keys;
+		JSymbolTable.PerThread v = values;
+		tokenizer.symbols = (k == null) ? null : k.get();
+		tokenizer.values = (v == null) ? null : v.get();
+	}
 
-		/**
-		 * Action when ARRAY ends.
-		 *
-		 * @return this
-		 */
-		Counters endArr() {
-			square.decrement();
-			return this;
-		}
+	/**
+	 * Make tokenizer use new tables of caches of the parser. The tables are not
+	 * bound to the current thread, so the tokenizer can be moved to other
+	 * threads.
+	 *
+	 * @param tokenizer
+	 *          splits JSON document into tokens.
+	 */
+	void useOwnCaches(final JTokenizer tokenizer) {
+		JSymbolTable.PerThread k = keys;
+		JSymbolTable.PerThread v = values;
+		tokenizer.symbols = (k == null) ? null : k.newTable();
+		tokenizer.values = (v == null) ? null : v.newTable();
+	}
 
-		/**
-		 * Get nesting value for objects.
-		 *
-		 * @return int
-		 */
-		int getObjectLevel() {
-			return curly.getCount();
-		}
+	/**
+	 * Parse document from tokenizer and pass events to handler.
+	 *
+	 * @param tokenizer
+	 *          splits JSON document into tokens.
+	 * @param handler
+	 *          receives events of the document.
+	 * @throws IOException
+	 *           while reading file.
+	 * @throws JParserException
+	 *           while parsing text.
+	 */
+	private void parse(final JTokenizer tokenizer, final JParseHandler handler)
+			throws JParserException, IOException {
+		useCaches(tokenizer);
+		drive(new JPullParser(tokenizer, maxDepth), handler);
+	}
 
-		/**
-		 * Get nesting value for arrays.
-		 *
-		 * @return int
-		 */
-		int getArrayLevel() {
-			return square.getCount();
+	/**
+	 * Loop over events of pull parser and call handler for each of them. Pull
+	 * parser is closed at the end.
+	 *
+	 * @param pull
+	 *          pull parser.
+	 * @param handler
+	 *          receives events of the document.
+	 * @throws IOException
+	 *           while reading file.
+	 * @throws JParserException
+	 *           while parsing text.
+	 */
+	static void drive(final JPullParser pull, final JParseHandler handler)
+			throws JParserException, IOException {
+		try {
+			JParseEvent event;
+			while ((event = pull.nextEvent()) != null) {
+				dispatch(pull, event, handler);
+			}
+		} finally {
+			pull.close();
 		}
+	}
 
-		int getLevel() {
-			return square.getCount() + curly.getCount();
+	/**
+	 * Call handler for the current event of pull parser.
+	 *
+	 * @param pull
+	 *          pull parser.
+	 * @param event
+	 *          current event.
+	 * @param handler
+	 *          receives the event.
+	 * @throws JParserException
+	 *           if value is wrong or handler stops parsing.
+	 */
+	static void dispatch(final JPullParser pull, final JParseEvent event, final JParseHandler handler)
+			throws JParserException {
+		switch (event) {
+		case START_OBJECT:
+			handler.startObject();
+			break;
+		case START_ARRAY:
+			handler.startArray();
+			break;
+		case END_OBJECT:
+			handler.endObject();
+			break;
+		case END_ARRAY:
+			handler.endArray();
+			break;
+		case FIELD_NAME:
+			handler.fieldName(pull.getText());
+			break;
+		case VALUE_STRING:
+			handler.value(pull.getText());
+			break;
+		case VALUE:
+			pull.value(handler);
+			break;
+		default:
+			throw new JParserException("Unknown parsing event " + event);
 		}
+	}
 
-		/**
-		 *@return
-		 *@see java.lang.Object#toString()
-		 */
-
-		@Override
-		public String toString() {
-			return "Counters [curly=" + curly + ", square=" + square + "]";
+	/**
+	 * Parse literal value and pass it to handler.
+	 *
+	 * @param text
+	 *          text of the value.
+	 * @param handler
+	 *          receives the value.
+	 * @throws JParserException
+	 *           if text is not a JSON literal.
+	 */
+	static void valueParse(final String text, final JParseHandler handler)
+			throws JParserException {
+		char[] chars = text.toCharArray();
+		if (!valueParse(chars, chars.length, handler)) {
+			doubleParse(text, handler);
 		}
-
 	}
 
 	/**
-	 * Helper class Counter keeps difference between opened and closed brackets in
-	 * JSON document.
-	 *
-	 * @author alexeikrasnopolski
+	 * Parse literal value in one pass over its symbols and pass it to handler.
+	 * The method recognizes null, true, false and decimal numbers without
+	 * regular expressions, exceptions or temporary objects. Integer number that
+	 * fits to long is passed as long. Other number is passed as double if it is
+	 * converted exactly by one double operation (mantissa less than 2^53 and
+	 * decimal exponent not bigger than 22 by absolute value). In other cases the
+	 * method returns false and the value should be parsed by
+	 * {@link #doubleParse(String, JParseHandler)}.
 	 *
+	 * @param text
+	 *          symbols of the value.
+	 * @param length
+	 *          number of symbols.
+	 * @param handler
+	 *          receives the value.
+	 * @return false if value is not recognized.
+	 * @throws JParserException
+	 *           if handler stops parsing.
 	 */
-	private class Counter {
-		/** Counter of brackets. */
-		private int counter = 0;
-
-		Counter() {
+	static boolean valueParse(final char[] text, final int length, final JParseHandler handler)
+			throws JParserException {
+		if (length == 4) {
+			if (text[0] == 'n' && text[1] == 'u' && text[2] == 'l' && text[3] == 'l') {
+				handler.nullValue();
+				return true;
+			}
+			if (text[0] == 't' && text[1] == 'r' && text[2] == 'u' && text[3] == 'e') {
+				handler.value(true);
+				return true;
+			}
+		} else if (length == 5 && text[0] == 'f' && text[1] == 'a' && text[2] == 'l' && text[3] == 's' && text[4] == 'e') {
+			handler.value(false);
+			return true;
 		}
-
-		/**
-		 * Get count.
-		 *
-		 * @return int
-		 */
-		int getCount() {
-			return counter;
+		int i = 0;
+		boolean negative = false;
+		if (length > 0 && (text[0] == '-' || text[0] == '+')) {
+			negative = text[0] == '-';
+			i++;
 		}
-
-		/**
-		 * Increment counter.
-		 */
-		void increment() {
-			counter++;
+		// Integer part is accumulated as negative number like Long.parseLong does.
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long multmin = limit / 10;
+		long acc = 0;
+		boolean overflow = false;
+		int digits = 0;
+		while (i < length) {
+			int d = text[i] - '0';
+			if (d < 0 || d > 9) {
+				break;
+			}
+			if (!overflow) {
+				if (acc < multmin || acc * 10 < limit + d) {
+					overflow = true;
+				} else {
+					acc = acc * 10 - d;
+				}
+			}
+			digits++;
+			i++;
 		}
-
-		/**
-		 * Decrement counter.
-		 */
-		void decrement() {
-			counter--;
+		if (i == length) {
+			if (digits == 0 || overflow) {
+				return false;
+			}
+			handler.value(negative ? acc : -acc);
+			return true;
 		}
-
-		/**
-		 *@return
-		 *@see java.lang.Object#toString()
-		 */
-
-		@Override
-		public String toString() {
-			return "Counter {" + counter + "}";
+		boolean exact = !overflow && acc > -MAX_EXACT;
+		long mantissa = -acc;
+		int exponent = 0;
+		if (text[i] == '.') {
+			i++;
+			while (i < length) {
+				int d = text[i] - '0';
+				if (d < 0 || d > 9) {
+					break;
+				}
+				if (exact && mantissa < (MAX_EXACT - d) / 10) {
+					mantissa = mantissa * 10 + d;
+					exponent--;
+				} else {
+					exact = false;
+				}
+				digits++;
+				i++;
+			}
+		}
+		if (digits == 0) {
+			return false;
+		}
+		if (i < length && (text[i] == 'e' || text[i] == 'E')) {
+			i++;
+			boolean negativeExp = false;
+			if (i < length && (text[i] == '-' || text[i] == '+')) {
+				negativeExp = text[i] == '-';
+				i++;
+			}
+			int exp = 0;
+			int expDigits = 0;
+			while (i < length) {
+				int d = text[i] - '0';
+				if (d < 0 || d > 9) {
+					break;
+				}
+				if (exp < 100000) {
+					exp = exp * 10 + d;
+				}
+				expDigits++;
+				i++;
+			}
+			if (expDigits == 0) {
+				return false;
+			}
+			exponent += negativeExp ? -exp : exp;
 		}
+		if (i != length || !exact) {
+			return false;
+		}
+		double value;
+		if (mantissa == 0) {
+			value = 0;
+		} else if (exponent >= 0 && exponent < POWERS_OF_10.length) {
+			value = mantissa * POWERS_OF_10[exponent];
+		} else if (exponent < 0 && -exponent < POWERS_OF_10.length) {
+			value = mantissa / POWERS_OF_10[-exponent];
+		} else {
+			return false;
+		}
+		handler.value(negative ? -value : value);
+		return true;
+	}
 
+	/**
+	 * Parse number by Double.parseDouble() and pass it to handler.
+	 *
+	 * @param text
+	 *          text of the value.
+	 * @param handler
+	 *          receives the value.
+	 * @throws JParserException
+	 *           if text is not a number.
+	 */
+	static void doubleParse(final String text, final JParseHandler handler)
+			throws JParserException {
+		double value;
+		try {
+			value = Double.parseDouble(text);
+		} catch (NumberFormatException e) {
+			throw new JParserException("Json syntax : wrong value '" + text + "'", e);
+		}
+		handler.value(value);
 	}
 }
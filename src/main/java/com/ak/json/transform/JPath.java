@@ -152,7 +152,9 @@ public final class JPath {
 						JNode node = null;
 						if (segment.matches(integerPattern)) {
 							idx = Integer.parseInt(segment);
-							node = axisNode.getChildren().get(idx);
+							if (idx >= 0 && idx < axisNode.childCount()) {
+								node = axisNode.getNodeAt(idx);
+							}
 						} else {
 							node = axisNode.getNode(segment);
 						}
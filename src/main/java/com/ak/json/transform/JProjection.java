@@ -0,0 +1,280 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.transform;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ak.json.JParseEvent;
+import com.ak.json.JParseHandler;
+import com.ak.json.JParserException;
+
+/**
+ * Class JProjection selects parts of a document that parser materializes (see
+ * {@link JParser#parse(String, JProjection)}). It is built from JPath
+ * expressions that will be applied to the parsed tree. Leading steps of an
+ * expression that are field names or '*' are pushed down to the parser: the
+ * parser keeps only nodes on these steps and builds whole subtrees where the
+ * steps end. Everything else is skipped by tokenizer without creating tokens
+ * and nodes (see {@link JPullParser#skipValue()}); syntax of skipped parts is
+ * not checked. Skipped element of array
+ * whose elements are matched by '*' is replaced by null, so kept elements
+ * have the same positions (and paths) as in the full tree. So the expression
+ * gives the same result on the projected tree as on the full one.
+ * <p>
+ * Pushdown stops before a step with predicate, axis, index, '.' or '//'; the
+ * subtree at that point is kept whole. An expression that can look outside of
+ * that subtree ('..', parent, ancestor and sibling axes, absolute path in
+ * predicate) or a relative expression needs the whole document.
+ * <pre>
+ * JProjection prices = new JProjection("/store/book/*&#47;price");
+ * JNode tree = parser.parse(file, prices);
+ * List&lt;JNode&gt; result = JPath.jpath("/store/book/*&#47;price", tree);
+ * </pre>
+ * Projection is immutable and can be shared by threads.
+ *
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+public final class JProjection {
+	/** Step that matches any member of object or element of array. */
+	private static final String ANY = "*";
+	/** Test for integer numbers. */
+	private static final String INTEGER = "^[\\-\\+]?\\d+$";
+
+	/** Projection of the root of document. */
+	private final Step root = new Step();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param paths
+	 *          JPath expressions that will be applied to the tree.
+	 */
+	public JProjection(final String... paths) {
+		for (String path : paths) {
+			Step step = root;
+			for (String segment : pushdown(path)) {
+				step = step.child(segment);
+			}
+			step.whole = true;
+		}
+	}
+
+	/**
+	 * Returns leading steps of JPath expression that parser can select.
+	 *
+	 * @param path
+	 *          JPath expression.
+	 * @return field names and '*'; empty list if whole document is needed.
+	 */
+	static List<String> pushdown(final String path) {
+		JPath.Path parsed = new JPath.Path(path);
+		List<String> segments = new ArrayList<String>();
+		if (!parsed.isAbsolute) {
+			return segments;
+		}
+		boolean stopped = false;
+		for (JPath.Step step : parsed.steps) {
+			if (outward(step)) {
+				return new ArrayList<String>();
+			}
+			stopped = stopped || step.pred != null || !step.axis.isEmpty() || step.segment.isEmpty()
+					|| step.segment.equals(".") || step.segment.matches(INTEGER);
+			if (!stopped) {
+				segments.add(step.segment);
+			}
+		}
+		return segments;
+	}
+
+	/**
+	 * Check if step can select nodes outside of the subtree of its context
+	 * node: parents, ancestors, siblings or absolute path in predicate.
+	 *
+	 * @param step
+	 *          step of JPath expression.
+	 * @return boolean
+	 */
+	private static boolean outward(final JPath.Step step) {
+		if (step.segment.equals("..") || step.axis.startsWith("ancestor") || step.axis.equals("parent")
+				|| step.axis.endsWith("sibling")) {
+			return true;
+		}
+		if (step.pred == null) {
+			return false;
+		}
+		for (String operand : new String[] {step.pred.left, step.pred.right}) {
+			if (operand.startsWith("/") || operand.contains("..") || operand.contains("ancestor")
+					|| operand.contains("parent") || operand.contains("sibling")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Pass to handler events of selected parts of document.
+	 *
+	 * @param pull
+	 *          source of events.
+	 * @param handler
+	 *          receives events of selected parts.
+	 * @throws IOException
+	 *           while reading from source.
+	 * @throws JParserException
+	 *           if syntax of the document is wrong.
+	 */
+	void parse(final JPullParser pull, final JParseHandler handler) throws IOException, JParserException {
+		List<List<Step>> levels = new ArrayList<List<Step>>();
+		List<List<Step>> elements = new ArrayList<List<Step>>();
+		List<Step> selected = Collections.singletonList(root);
+		String name = null;
+		JParseEvent event;
+		while ((event = pull.nextEvent()) != null) {
+			switch (event) {
+			case FIELD_NAME:
+				selected = match(levels.get(levels.size() - 1), pull.getText());
+				if (selected.isEmpty()) {
+					pull.skipValue();
+				} else {
+					name = pull.getText();
+				}
+				break;
+			case END_OBJECT:
+			case END_ARRAY:
+				levels.remove(levels.size() - 1);
+				elements.remove(elements.size() - 1);
+				JParser.dispatch(pull, event, handler);
+				break;
+			default:
+				int level = levels.size();
+				if (level > 0 && elements.get(level - 1) != null) {
+					selected = elements.get(level - 1);
+				}
+				if (whole(selected)) {
+					if (name != null) {
+						handler.fieldName(name);
+					}
+					JParser.dispatch(pull, event, handler);
+					while (pull.getDepth() > level && (event = pull.nextEvent()) != null) {
+						JParser.dispatch(pull, event, handler);
+					}
+				} else if (!selected.isEmpty() && (event == JParseEvent.START_OBJECT || event == JParseEvent.START_ARRAY)) {
+					if (name != null) {
+						handler.fieldName(name);
+					}
+					JParser.dispatch(pull, event, handler);
+					levels.add(selected);
+					// every element of array is matched by the same steps
+					elements.add((event == JParseEvent.START_ARRAY) ? match(selected, null) : null);
+				} else {
+					pull.skipChildren();
+					if (level > 0 && elements.get(level - 1) != null && !selected.isEmpty()) {
+						// placeholder keeps positions of following elements
+						handler.nullValue();
+					}
+				}
+				name = null;
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Find steps that match member of container.
+	 *
+	 * @param steps
+	 *          steps of container.
+	 * @param name
+	 *          field name of member or null for element of array.
+	 * @return list of steps, empty if the member is not selected.
+	 */
+	private static List<Step> match(final List<Step> steps, final String name) {
+		List<Step> result = Collections.emptyList();
+		for (Step step : steps) {
+			Step named = (name == null || step.names == null) ? null : step.names.get(name);
+			for (Step found : new Step[] {named, step.any}) {
+				if (found != null) {
+					if (result.isEmpty()) {
+						result = new ArrayList<Step>(2);
+					}
+					result.add(found);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Check if whole subtree is selected.
+	 *
+	 * @param steps
+	 *          matched steps.
+	 * @return boolean
+	 */
+	private static boolean whole(final List<Step> steps) {
+		for (Step step : steps) {
+			if (step.whole) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Node of tree of steps.
+	 */
+	private static final class Step {
+		/** Next steps by field name. */
+		private Map<String, Step> names;
+		/** Next step '*'. */
+		private Step any;
+		/** True if whole subtree is selected. */
+		private boolean whole;
+
+		/**
+		 * Returns next step, creates it if needed.
+		 *
+		 * @param segment
+		 *          field name or '*'.
+		 * @return Step
+		 */
+		Step child(final String segment) {
+			if (ANY.equals(segment)) {
+				if (any == null) {
+					any = new Step();
+				}
+				return any;
+			}
+			if (names == null) {
+				names = new HashMap<String, Step>();
+			}
+			Step step = names.get(segment);
+			if (step == null) {
+				step = new Step();
+				names.put(segment, step);
+			}
+			return step;
+		}
+	}
+}
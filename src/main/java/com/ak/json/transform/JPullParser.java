@@ -0,0 +1,567 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.transform;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Arrays;
+
+import com.ak.json.JNode;
+import com.ak.json.JParseEvent;
+import com.ak.json.JParseHandler;
+import com.ak.json.JParserException;
+import com.ak.json.nodetree.JNodeType;
+
+//CSOFF: Magic
+/**
+ * Class JPullParser is a pull cursor over parsing events of a JSON document.
+ * It does not build JNode tree: application asks for the next event with
+ * {@link #nextEvent()} and reads text or value of the current token. Syntax of
+ * the document is checked the same way as JParser does.
+ * <p>
+ * Events are START_OBJECT, START_ARRAY, END_OBJECT, END_ARRAY, FIELD_NAME,
+ * VALUE and VALUE_STRING; DELIMITER is consumed internally and never returned.
+ * <pre>
+ * JPullParser pull = new JPullParser(inputStream);
+ * while ((event = pull.nextEvent()) != null) {
+ *   if (event == JParseEvent.FIELD_NAME &amp;&amp; "price".equals(pull.getText())) {
+ *     pull.nextEvent();
+ *     price = pull.getDouble();
+ *   }
+ * }
+ * </pre>
+ *
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+public class JPullParser implements Closeable {
+	/** Number of events produced by tokenizer (START_OBJECT to DELIMITER). */
+	private static final int TOKENS = JParseEvent.DELIMITER.ordinal() + 1;
+	/** Previous token state before the first token of document. */
+	private static final int NO_TOKEN = TOKENS;
+	/** Container kind: top level of document. */
+	private static final byte TOP = 0;
+	/** Container kind: OBJECT. */
+	private static final byte OBJECT = 1;
+	/** Container kind: ARRAY. */
+	private static final byte ARRAY = 2;
+
+	/** Action of transition: open container. */
+	private static final byte PUSH = 1;
+	/** Action of transition: close container. */
+	private static final byte POP = 2;
+	/** Action of transition: return event. */
+	private static final byte EMIT = 3;
+	/** Action of transition: consume token silently. */
+	private static final byte SKIP = 4;
+	/** Error of transition: ',' is not allowed after previous token. */
+	private static final byte WRONG_DELIMITER = -1;
+	/** Error of transition: token is not allowed after previous token. */
+	private static final byte WRONG_FORMAT = -2;
+	/** Error of transition: closing bracket does not match opened one. */
+	private static final byte WRONG_CLOSE = -3;
+	/** Error of transition: field name is not inside of object. */
+	private static final byte WRONG_FIELD = -4;
+
+	/**
+	 * Grammar of token sequence: bit i of FOLLOWS[e] is set if token with
+	 * ordinal i can follow token with ordinal e.
+	 */
+	private static final int[] FOLLOWS = new int[TOKENS];
+	/**
+	 * Transition table compiled from grammar and container rules. Index is
+	 * (kind * (TOKENS + 1) + previous) * TOKENS + token, value is action or
+	 * error. Member of object (value, object or array) must follow its field
+	 * name.
+	 */
+	private static final byte[] TRANSITIONS = new byte[3 * (TOKENS + 1) * TOKENS];
+	static {
+		follows(JParseEvent.START_OBJECT, JParseEvent.END_OBJECT, JParseEvent.FIELD_NAME);
+		follows(JParseEvent.START_ARRAY, JParseEvent.START_OBJECT, JParseEvent.START_ARRAY, JParseEvent.END_ARRAY,
+				JParseEvent.VALUE, JParseEvent.VALUE_STRING);
+		follows(JParseEvent.END_OBJECT, JParseEvent.END_OBJECT, JParseEvent.END_ARRAY, JParseEvent.DELIMITER);
+		follows(JParseEvent.END_ARRAY, JParseEvent.END_OBJECT, JParseEvent.END_ARRAY, JParseEvent.DELIMITER);
+		follows(JParseEvent.FIELD_NAME, JParseEvent.START_OBJECT, JParseEvent.START_ARRAY, JParseEvent.VALUE,
+				JParseEvent.VALUE_STRING);
+		// scalar value that absorbed ',' is followed by what follows DELIMITER, see precedent()
+		follows(JParseEvent.VALUE, JParseEvent.END_OBJECT, JParseEvent.END_ARRAY, JParseEvent.DELIMITER);
+		follows(JParseEvent.VALUE_STRING, JParseEvent.END_OBJECT, JParseEvent.END_ARRAY, JParseEvent.DELIMITER);
+		follows(JParseEvent.DELIMITER, JParseEvent.START_OBJECT, JParseEvent.START_ARRAY, JParseEvent.FIELD_NAME,
+				JParseEvent.VALUE, JParseEvent.VALUE_STRING);
+
+		JParseEvent[] events = JParseEvent.values();
+		for (int kind = TOP; kind <= ARRAY; kind++) {
+			for (int previous = 0; previous <= NO_TOKEN; previous++) {
+				boolean keyless = kind == OBJECT && previous != JParseEvent.FIELD_NAME.ordinal();
+				for (int token = 0; token < TOKENS; token++) {
+					byte action;
+					if (previous != NO_TOKEN && (FOLLOWS[previous] & (1 << token)) == 0) {
+						action = (events[token] == JParseEvent.DELIMITER) ? WRONG_DELIMITER : WRONG_FORMAT;
+					} else {
+						switch (events[token]) {
+						case START_OBJECT:
+						case START_ARRAY:
+							action = keyless ? WRONG_FORMAT : PUSH;
+							break;
+						case END_OBJECT:
+							action = (kind == OBJECT) ? POP : WRONG_CLOSE;
+							break;
+						case END_ARRAY:
+							action = (kind == ARRAY) ? POP : WRONG_CLOSE;
+							break;
+						case FIELD_NAME:
+							action = (kind == OBJECT) ? EMIT : WRONG_FIELD;
+							break;
+						case DELIMITER:
+							action = SKIP;
+							break;
+						default:
+							action = keyless ? WRONG_FORMAT : EMIT;
+							break;
+						}
+					}
+					TRANSITIONS[(kind * (TOKENS + 1) + previous) * TOKENS + token] = action;
+				}
+			}
+		}
+	}
+
+	/** Initial size of container stack. */
+	private static final int INITIAL_DEPTH = 32;
+
+	/** Source of tokens. */
+	private final JTokenizer tokenizer;
+	/** Limit of nesting of objects and arrays. */
+	private final int maxDepth;
+	/** Stack of kinds of opened containers. */
+	private byte[] stack = new byte[INITIAL_DEPTH];
+	/** Number of opened containers. */
+	private int depth;
+	/** Current event. */
+	private JParseEvent event;
+	/** Previous token including DELIMITER. */
+	private JParseEvent lastEvent;
+	/** Ordinal of previous token or NO_TOKEN. */
+	private int previous = NO_TOKEN;
+	/** True if the root value of document was started. */
+	private boolean started;
+	/** True if the end of document was checked. */
+	private boolean finished;
+	/** Symbols of the current literal value. */
+	private char[] literal = new char[64];
+	/**
+	 * True if source is a sequence of documents: the next document can follow
+	 * the end of root value.
+	 */
+	boolean sequence;
+	/** Node of a tree being built from events. Used for error messages only. */
+	JNode context;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param jsonText
+	 *          contains JSON document as a text.
+	 */
+	public JPullParser(final String jsonText) {
+		this(new JCharTokenizer(jsonText), JParser.DEFAULT_MAX_DEPTH);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param inputStream
+	 *          contains JSON document as UTF-8 encoded text.
+	 */
+	public JPullParser(final InputStream inputStream) {
+		this(new JUtf8Tokenizer(inputStream), JParser.DEFAULT_MAX_DEPTH);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param reader
+	 *          contains JSON document as a text.
+	 */
+	public JPullParser(final Reader reader) {
+		this(new JCharTokenizer(reader), JParser.DEFAULT_MAX_DEPTH);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param file
+	 *          contains JSON document as UTF-8 encoded text.
+	 * @throws IOException
+	 *           if file cannot be opened.
+	 */
+	public JPullParser(final File file) throws IOException {
+		this(new JUtf8Tokenizer(new FileInputStream(file)), JParser.DEFAULT_MAX_DEPTH);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pTokenizer
+	 *          source of tokens.
+	 * @param pMaxDepth
+	 *          limit of nesting of objects and arrays.
+	 */
+	JPullParser(final JTokenizer pTokenizer, final int pMaxDepth) {
+		this.tokenizer = pTokenizer;
+		this.maxDepth = pMaxDepth;
+	}
+
+	/**
+	 * Move cursor to the next event.
+	 *
+	 * @return JParseEvent or null if the document is over.
+	 * @throws IOException
+	 *           while reading from source.
+	 * @throws JParserException
+	 *           if syntax of the document is wrong.
+	 */
+	public JParseEvent nextEvent() throws IOException, JParserException {
+		while (true) {
+			if (started && depth == 0) {
+				if (!sequence) {
+					return finish();
+				}
+				started = false;
+				lastEvent = null;
+				previous = NO_TOKEN;
+			}
+			JParseEvent token = tokenizer.next();
+			if (token == null) {
+				if (depth != 0) {
+					int objects = 0;
+					for (int i = 0; i < depth; i++) {
+						if (stack[i] == OBJECT) {
+							objects++;
+						}
+					}
+					throw new JParserException(
+							"Json syntax : opened parentheses do not match closed parentheses. Difference: "
+									+ "'{' = " + objects + " '[' = " + (depth - objects), tokenizer.getOffset());
+				}
+				finished = true;
+				return event = null;
+			}
+			int kind = (depth == 0) ? TOP : stack[depth - 1];
+			byte action = TRANSITIONS[(kind * (TOKENS + 1) + previous) * TOKENS + token.ordinal()];
+			if (action < 0) {
+				throw error(action, token);
+			}
+			lastEvent = precedent(token, tokenizer);
+			previous = lastEvent.ordinal();
+			switch (action) {
+			case PUSH:
+				if (depth == maxDepth) {
+					throw new JParserException(
+							"Json syntax : nesting of objects and arrays is deeper than " + maxDepth,
+							tokenizer.getTokenOffset());
+				}
+				if (depth == stack.length) {
+					stack = Arrays.copyOf(stack, depth * 2);
+				}
+				stack[depth++] = (token == JParseEvent.START_OBJECT) ? OBJECT : ARRAY;
+				started = true;
+				return event = token;
+			case POP:
+				depth--;
+				return event = token;
+			case EMIT:
+				started = true;
+				return event = token;
+			default:
+				continue;
+			}
+		}
+	}
+
+	/**
+	 * Create exception for wrong transition. Messages are the same as messages
+	 * of original JParser; offset of the wrong token is attached.
+	 *
+	 * @param action
+	 *          error code of transition.
+	 * @param token
+	 *          wrong token.
+	 * @return JParserException
+	 */
+	private JParserException error(final byte action, final JParseEvent token) {
+		long offset = tokenizer.getTokenOffset();
+		String near = "";
+		if (context != null && context.getParent() != null) {
+			near = " near " + context.getParent().toJson();
+		}
+		switch (action) {
+		case WRONG_DELIMITER:
+			return new JParserException("Json syntax : wrong position for ','" + near, offset);
+		case WRONG_FORMAT:
+			return new JParserException("Json syntax : wrong format" + near + " <" + lastEvent + "," + token + ">", offset);
+		case WRONG_CLOSE:
+			String where = (context != null)
+					? " after " + context.toJson() + tokenizer.getText()
+					: " at position " + tokenizer.getOffset();
+			return new JParserException("Json syntax : wrong symbol " + tokenizer.getText() + where, offset);
+		default:
+			return new JParserException("Json syntax : field name '" + tokenizer.getText() + "' outside of object",
+					offset);
+		}
+	}
+
+	/**
+	 * Check that nothing except white spaces follows the root value.
+	 *
+	 * @return null
+	 * @throws IOException
+	 *           while reading from source.
+	 * @throws JParserException
+	 *           if there are unexpected symbols.
+	 */
+	private JParseEvent finish() throws IOException, JParserException {
+		if (!finished) {
+			finished = true;
+			String lastText = tokenizer.getText();
+			long offset = tokenizer.getOffset();
+			String message = tokenizer.flush();
+			if (message.length() != 0) {
+				throw new JParserException(
+						"Unexpected symbol(s) near end of document '" + lastText + message + "'.", offset);
+			}
+		}
+		return event = null;
+	}
+
+	/**
+	 * Returns the current event.
+	 *
+	 * @return JParseEvent
+	 */
+	public JParseEvent getEvent() {
+		return event;
+	}
+
+	/**
+	 * Returns text of the current token: field name for FIELD_NAME, value for
+	 * VALUE and VALUE_STRING (string without quotes, escape sequences are kept as
+	 * is) and bracket symbol for other events.
+	 *
+	 * @return String
+	 */
+	public String getText() {
+		return (event == null) ? null : tokenizer.getText();
+	}
+
+	/**
+	 * Returns value of the current token as long.
+	 *
+	 * @return long
+	 * @throws JParserException
+	 *           if the value is not an integer number.
+	 */
+	public long getLong() throws JParserException {
+		try {
+			return Long.parseLong(getText());
+		} catch (NumberFormatException e) {
+			throw new JParserException("Value '" + getText() + "' is not a long number", e);
+		}
+	}
+
+	/**
+	 * Returns value of the current token as double.
+	 *
+	 * @return double
+	 * @throws JParserException
+	 *           if the value is not a number.
+	 */
+	public double getDouble() throws JParserException {
+		try {
+			return Double.parseDouble(getText());
+		} catch (NumberFormatException | NullPointerException e) {
+			throw new JParserException("Value '" + getText() + "' is not a number", e);
+		}
+	}
+
+	/**
+	 * Parse the current VALUE token and pass it to handler. Symbols of the
+	 * token are scanned directly, String is created only for values that need
+	 * Double.parseDouble() (see {@link JParser#valueParse(char[], int, JParseHandler)}).
+	 *
+	 * @param handler
+	 *          receives the value.
+	 * @throws JParserException
+	 *           if the value is wrong.
+	 */
+	void value(final JParseHandler handler) throws JParserException {
+		int length = tokenizer.copyText(literal);
+		if (length > literal.length) {
+			literal = new char[length];
+			tokenizer.copyText(literal);
+		}
+		if (!JParser.valueParse(literal, length, handler)) {
+			JParser.doubleParse(getText(), handler);
+		}
+	}
+
+	/**
+	 * Returns number of opened objects and arrays.
+	 *
+	 * @return int
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * If the current event is START_OBJECT or START_ARRAY, skips all events
+	 * until the matching END_OBJECT or END_ARRAY, which becomes the current
+	 * event. Does nothing for other events. The container is skipped by
+	 * tokenizer without reporting of tokens (see {@link #skipValue()}).
+	 *
+	 * @throws IOException
+	 *           while reading from source.
+	 * @throws JParserException
+	 *           if syntax of the document is wrong.
+	 */
+	public void skipChildren() throws IOException, JParserException {
+		if (event != JParseEvent.START_OBJECT && event != JParseEvent.START_ARRAY) {
+			return;
+		}
+		JParseEvent token = tokenizer.skipContainer();
+		if (token == null) {
+			nextEvent();
+			return;
+		}
+		byte kind = (token == JParseEvent.END_OBJECT) ? OBJECT : ARRAY;
+		if (stack[depth - 1] != kind) {
+			throw new JParserException("Json syntax : wrong symbol " + tokenizer.getText()
+					+ " at position " + tokenizer.getOffset(), tokenizer.getTokenOffset());
+		}
+		depth--;
+		lastEvent = token;
+		previous = token.ordinal();
+		event = token;
+	}
+
+	/**
+	 * Skip the value of the current FIELD_NAME or the rest of the current
+	 * START_OBJECT or START_ARRAY. The last event of the value becomes the
+	 * current event. Skipped container is scanned only for brackets and bounds
+	 * of strings: tokens are not created, strings are not decoded and syntax
+	 * inside it is not checked, so skipping is limited by speed of memory.
+	 * Does nothing for other events.
+	 *
+	 * @throws IOException
+	 *           while reading from source.
+	 * @throws JParserException
+	 *           if brackets of the skipped value do not match.
+	 */
+	public void skipValue() throws IOException, JParserException {
+		if (event == JParseEvent.FIELD_NAME) {
+			nextEvent();
+		}
+		skipChildren();
+	}
+
+	@Override
+	public void close() throws IOException {
+		tokenizer.close();
+	}
+
+	/**
+	 * Check if two events are happened in right sequence.
+	 *
+	 * @param currentEvent
+	 *          current event.
+	 * @param previousEvent
+	 *          previous event.
+	 * @return true if sequence is allowed.
+	 */
+	static boolean checkPrecedent(
+			final JParseEvent currentEvent,
+			final JParseEvent previousEvent
+			) {
+		if (previousEvent == null) {
+			return true;
+		}
+		return (FOLLOWS[previousEvent.ordinal()] & (1 << currentEvent.ordinal())) != 0;
+	}
+
+	/**
+	 * Check if token is allowed by transition table inside of container.
+	 *
+	 * @param currentEvent
+	 *          current event.
+	 * @param previousEvent
+	 *          previous event, null if it is unknown.
+	 * @param container
+	 *          OBJECT or ARRAY node that contains the token, null if it is
+	 *          unknown: only the grammar is checked then.
+	 * @return true if the token is allowed.
+	 */
+	static boolean checkTransition(
+			final JParseEvent currentEvent,
+			final JParseEvent previousEvent,
+			final JNode container
+			) {
+		if (container == null) {
+			return checkPrecedent(currentEvent, previousEvent);
+		}
+		int kind = (container.getType() == JNodeType.OBJECT) ? OBJECT : ARRAY;
+		int previous = (previousEvent == null) ? NO_TOKEN : previousEvent.ordinal();
+		return TRANSITIONS[(kind * (TOKENS + 1) + previous) * TOKENS + currentEvent.ordinal()] >= 0;
+	}
+
+	/**
+	 * Returns token that is checked by grammar before the next token: DELIMITER
+	 * if the current scalar value absorbed the following ',', the token itself
+	 * otherwise.
+	 *
+	 * @param token
+	 *          current token.
+	 * @param tokenizer
+	 *          tokenizer that scanned the token.
+	 * @return JParseEvent
+	 */
+	static JParseEvent precedent(final JParseEvent token, final JTokenizer tokenizer) {
+		if ((token == JParseEvent.VALUE || token == JParseEvent.VALUE_STRING) && tokenizer.hasComma()) {
+			return JParseEvent.DELIMITER;
+		}
+		return token;
+	}
+
+	/**
+	 * Add tokens that can follow token to grammar.
+	 *
+	 * @param token
+	 *          previous token.
+	 * @param next
+	 *          tokens allowed after it.
+	 */
+	private static void follows(final JParseEvent token, final JParseEvent... next) {
+		for (JParseEvent e : next) {
+			FOLLOWS[token.ordinal()] |= 1 << e.ordinal();
+		}
+	}
+}
@@ -0,0 +1,235 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.transform;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import com.ak.json.JInstrumentalNode;
+import com.ak.json.JNode;
+import com.ak.json.JParseEvent;
+import com.ak.json.JParserException;
+
+/**
+ * Class JStreamParser reads a big JSON document element by element. Each node
+ * selected by path is returned by {@link #nextNode()} as independent JNode
+ * tree (its parent is null), other parts of the document are skipped. Only the
+ * current selected node is kept in memory, so application can process a
+ * document that is much bigger than memory if each element is small.
+ * <p>
+ * Path is a simplified absolute JPath: sequence of steps separated by '/',
+ * where a step is field name, index of array element or '*' that matches any
+ * member of object or element of array. Path "/*" selects elements of top
+ * level array, path "/book-store/*&#47;book" selects books of book store, empty
+ * path "" selects whole document.
+ * <pre>
+ * try (JStreamParser stream = new JStreamParser(inputStream, "/*")) {
+ *   JNode record;
+ *   while ((record = stream.nextNode()) != null) {
+ *     process(record);
+ *   }
+ * }
+ * </pre>
+ *
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+public class JStreamParser implements Closeable {
+	/** Wildcard step of path. */
+	private static final String ANY = "*";
+
+	/** Source of events. */
+	private final JPullParser pull;
+	/** Steps of path. */
+	private final String[] steps;
+	/** Field name of the current member of opened container on each level. */
+	private final String[] names;
+	/** Index of the current element of opened container on each level, -1 for objects. */
+	private final int[] indexes;
+	/** Number of opened containers. */
+	private int depth;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param jsonText
+	 *          contains JSON document as a text.
+	 * @param path
+	 *          selects nodes to return.
+	 */
+	public JStreamParser(final String jsonText, final String path) {
+		this(new JPullParser(jsonText), path);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param inputStream
+	 *          contains JSON document as UTF-8 encoded text.
+	 * @param path
+	 *          selects nodes to return.
+	 */
+	public JStreamParser(final InputStream inputStream, final String path) {
+		this(new JPullParser(inputStream), path);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param reader
+	 *          contains JSON document as a text.
+	 * @param path
+	 *          selects nodes to return.
+	 */
+	public JStreamParser(final Reader reader, final String path) {
+		this(new JPullParser(reader), path);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param file
+	 *          contains JSON document as UTF-8 encoded text.
+	 * @param path
+	 *          selects nodes to return.
+	 * @throws IOException
+	 *           if file cannot be opened.
+	 */
+	public JStreamParser(final File file, final String path) throws IOException {
+		this(new JPullParser(file), path);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pPull
+	 *          source of events.
+	 * @param path
+	 *          selects nodes to return.
+	 */
+	JStreamParser(final JPullParser pPull, final String path) {
+		this.pull = pPull;
+		this.steps = parsePath(path);
+		this.names = new String[steps.length];
+		this.indexes = new int[steps.length];
+	}
+
+	/**
+	 * Split path to steps.
+	 *
+	 * @param path
+	 *          path to split.
+	 * @return array of steps.
+	 */
+	private static String[] parsePath(final String path) {
+		String p = path.startsWith("/") ? path.substring(1) : path;
+		if (p.isEmpty()) {
+			return new String[0];
+		}
+		String[] result = p.split("/", -1);
+		for (String step : result) {
+			if (step.isEmpty() || step.equals(".") || step.equals("..") || step.contains("[") || step.contains("::")) {
+				throw new IllegalArgumentException("Path '" + path
+						+ "' is not supported by stream parser: only names, indexes and '*' are allowed");
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Read the next node selected by path.
+	 *
+	 * @return JNode or null if the document is over.
+	 * @throws IOException
+	 *           while reading from source.
+	 * @throws JParserException
+	 *           if syntax of the document is wrong.
+	 */
+	public JNode nextNode() throws IOException, JParserException {
+		JParseEvent event;
+		while ((event = pull.nextEvent()) != null) {
+			switch (event) {
+			case FIELD_NAME:
+				names[depth - 1] = pull.getText();
+				break;
+			case END_OBJECT:
+			case END_ARRAY:
+				depth--;
+				break;
+			default:
+				String key = null;
+				if (depth > 0) {
+					int level = depth - 1;
+					if (indexes[level] >= 0) {
+						key = Integer.toString(indexes[level]++);
+					} else {
+						key = names[level];
+					}
+					if (!ANY.equals(steps[level]) && !steps[level].equals(key)) {
+						pull.skipChildren();
+						break;
+					}
+				}
+				if (depth == steps.length) {
+					return readNode(event, key);
+				}
+				if (event == JParseEvent.START_OBJECT || event == JParseEvent.START_ARRAY) {
+					indexes[depth++] = (event == JParseEvent.START_ARRAY) ? 0 : -1;
+				}
+				break;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Build tree of the value started by the current event.
+	 *
+	 * @param event
+	 *          the current event.
+	 * @param key
+	 *          field name or index of the value, null for root of document.
+	 * @return JNode
+	 * @throws IOException
+	 *           while reading from source.
+	 * @throws JParserException
+	 *           if syntax of the document is wrong.
+	 */
+	private JNode readNode(final JParseEvent event, final String key) throws IOException, JParserException {
+		JTreeBuilder builder = new JTreeBuilder(pull);
+		int level = depth;
+		JParser.dispatch(pull, event, builder);
+		while (pull.getDepth() > level) {
+			JParser.dispatch(pull, pull.nextEvent(), builder);
+		}
+		pull.context = null;
+		JNode node = builder.getRoot();
+		if (key != null) {
+			((JInstrumentalNode) node).setKey(key);
+		}
+		return node;
+	}
+
+	@Override
+	public void close() throws IOException {
+		pull.close();
+	}
+}
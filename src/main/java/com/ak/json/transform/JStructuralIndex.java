@@ -0,0 +1,346 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.transform;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.ak.json.JNode;
+import com.ak.json.JParseEvent;
+import com.ak.json.JParseHandler;
+import com.ak.json.JParserException;
+import com.ak.json.nodetree.JValueNode;
+
+/**
+ * Class JStructuralIndex keeps positions of all tokens of a JSON document in
+ * primitive arrays. For every token it stores kind of token and bounds of its
+ * text; for START_OBJECT and START_ARRAY it stores index of the matching end
+ * token instead, so a container can be skipped in one step. Index is built by
+ * one pass of the pull parser and is used by lazy nodes to create their
+ * children on demand.
+ *
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+final class JStructuralIndex {
+	/** Initial capacity of index. */
+	private static final int INITIAL_CAPACITY = 1024;
+	/** JParseEvent values indexed by ordinal. */
+	private static final JParseEvent[] EVENTS = JParseEvent.values();
+	/** Handler that ignores values, literals are only checked while index is built. */
+	private static final JParseHandler IGNORE = new JParseHandler() {
+		public void startObject() { }
+		public void endObject() { }
+		public void startArray() { }
+		public void endArray() { }
+		public void fieldName(final String name) { }
+		public void value(final String value) { }
+		public void value(final long value) { }
+		public void value(final double value) { }
+		public void value(final boolean value) { }
+		public void nullValue() { }
+	};
+
+	/**
+	 * Handler that keeps number or boolean value without node, so array can
+	 * keep it in primitive array.
+	 */
+	private static final class Scalar implements JParseHandler {
+		/** Long, Double or Boolean of the last value, null node for null. */
+		private Object value;
+
+		public void startObject() { }
+		public void endObject() { }
+		public void startArray() { }
+		public void endArray() { }
+		public void fieldName(final String name) { }
+		public void value(final String pValue) { }
+
+		public void value(final long pValue) {
+			value = Long.valueOf(pValue);
+		}
+
+		public void value(final double pValue) {
+			value = Double.valueOf(pValue);
+		}
+
+		public void value(final boolean pValue) {
+			value = Boolean.valueOf(pValue);
+		}
+
+		public void nullValue() {
+			value = new JValueNode<Object>();
+		}
+	}
+
+	/** UTF-8 encoded JSON text. */
+	private final byte[] text;
+	/** Cache of field names. Null if names are not cached. */
+	private final JSymbolTable.PerThread symbols;
+	/** Cache of string values. Null if values are not cached. */
+	private final JSymbolTable.PerThread values;
+	/** JParseEvent ordinal of tokens. */
+	private byte[] kinds = new byte[INITIAL_CAPACITY];
+	/** Start of text of tokens. */
+	private int[] starts = new int[INITIAL_CAPACITY];
+	/** End of text of scalar tokens or index of matching end token of containers. */
+	private int[] ends = new int[INITIAL_CAPACITY];
+	/** Number of tokens. */
+	private int size;
+	/** Symbols of literal value being parsed. */
+	private char[] literal = new char[64];
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pText
+	 *          UTF-8 encoded JSON text.
+	 * @param pSymbols
+	 *          cache of field names, can be null.
+	 * @param pValues
+	 *          cache of string values, can be null.
+	 */
+	private JStructuralIndex(final byte[] pText, final JSymbolTable.PerThread pSymbols,
+			final JSymbolTable.PerThread pValues) {
+		this.text = pText;
+		this.symbols = pSymbols;
+		this.values = pValues;
+	}
+
+	/**
+	 * Build index of document. Syntax of document and literal values are
+	 * checked the same way as JParser does.
+	 *
+	 * @param text
+	 *          UTF-8 encoded JSON text. The array is not copied and must not be
+	 *          changed while lazy nodes use it.
+	 * @param maxDepth
+	 *          limit of nesting of objects and arrays.
+	 * @param symbols
+	 *          cache of field names, can be null.
+	 * @param values
+	 *          cache of string values, can be null.
+	 * @return JStructuralIndex
+	 * @throws IOException
+	 *           while reading text.
+	 * @throws JParserException
+	 *           if syntax of the document is wrong.
+	 */
+	static JStructuralIndex build(final byte[] text, final int maxDepth, final JSymbolTable.PerThread symbols,
+			final JSymbolTable.PerThread values) throws IOException, JParserException {
+		JStructuralIndex index = new JStructuralIndex(text, symbols, values);
+		JUtf8Tokenizer tokenizer = new JUtf8Tokenizer(text, 0, text.length);
+		int[] open = new int[32];
+		int depth = 0;
+		try (JPullParser pull = new JPullParser(tokenizer, maxDepth)) {
+			JParseEvent event;
+			while ((event = pull.nextEvent()) != null) {
+				int token;
+				switch (event) {
+				case FIELD_NAME:
+					index.add(event, tokenizer.start, tokenizer.end);
+					break;
+				case END_OBJECT:
+				case END_ARRAY:
+					token = index.add(event, tokenizer.start, tokenizer.end);
+					index.ends[open[--depth]] = token;
+					break;
+				default:
+					token = index.add(event, tokenizer.start, tokenizer.end);
+					if (event == JParseEvent.VALUE) {
+						index.literal(token, IGNORE);
+					}
+					if (event == JParseEvent.START_OBJECT || event == JParseEvent.START_ARRAY) {
+						if (depth == open.length) {
+							open = Arrays.copyOf(open, depth * 2);
+						}
+						open[depth++] = token;
+					}
+					break;
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Add token to index.
+	 *
+	 * @param event
+	 *          kind of token.
+	 * @param start
+	 *          start of text of token.
+	 * @param end
+	 *          end of text of token.
+	 * @return index of the token.
+	 */
+	private int add(final JParseEvent event, final int start, final int end) {
+		if (size == kinds.length) {
+			int capacity = size * 2;
+			kinds = Arrays.copyOf(kinds, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+		}
+		kinds[size] = (byte) event.ordinal();
+		starts[size] = start;
+		ends[size] = end;
+		return size++;
+	}
+
+	/**
+	 * Returns number of tokens.
+	 *
+	 * @return int
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns index of the last token of value started by the token: matching
+	 * end token for START_OBJECT and START_ARRAY, the token itself for other
+	 * tokens.
+	 *
+	 * @param token
+	 *          index of token.
+	 * @return int
+	 */
+	int last(final int token) {
+		byte kind = kinds[token];
+		if (kind == JParseEvent.START_OBJECT.ordinal() || kind == JParseEvent.START_ARRAY.ordinal()) {
+			return ends[token];
+		}
+		return token;
+	}
+
+	/**
+	 * Decode text of FIELD_NAME, VALUE or VALUE_STRING token. Field names and
+	 * string values are taken from tables of caches of the current thread if
+	 * the caches are set: lazy nodes can be expanded by other thread than the
+	 * one that built the index.
+	 *
+	 * @param token
+	 *          index of token.
+	 * @return String
+	 */
+	String text(final int token) {
+		int from = starts[token];
+		int to = ends[token];
+		boolean nonAscii = false;
+		boolean lineBreaks = false;
+		for (int i = from; i < to; i++) {
+			byte c = text[i];
+			if (c < 0) {
+				nonAscii = true;
+			} else if (c == '\n' || c == '\r') {
+				lineBreaks = true;
+			}
+		}
+		if (!nonAscii && !lineBreaks && symbols != null && kinds[token] == JParseEvent.FIELD_NAME.ordinal()) {
+			return symbols.get().get(text, from, to);
+		}
+		if (!nonAscii && !lineBreaks && values != null && kinds[token] == JParseEvent.VALUE_STRING.ordinal()) {
+			return values.get().get(text, from, to);
+		}
+		if (lineBreaks) {
+			byte[] filtered = new byte[to - from];
+			int length = 0;
+			for (int i = from; i < to; i++) {
+				if (text[i] != '\n' && text[i] != '\r') {
+					filtered[length++] = text[i];
+				}
+			}
+			return new String(filtered, 0, length, StandardCharsets.UTF_8);
+		}
+		return new String(text, from, to - from, nonAscii ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Create node of value started by the token. Objects and arrays are created
+	 * as lazy nodes.
+	 *
+	 * @param token
+	 *          index of token.
+	 * @param builder
+	 *          creates value nodes.
+	 * @return JNode
+	 * @throws JParserException
+	 *           if literal value is wrong.
+	 */
+	JNode node(final int token, final JTreeBuilder builder) throws JParserException {
+		switch (EVENTS[kinds[token]]) {
+		case START_OBJECT:
+			return new JLazyObjectNode(this, token);
+		case START_ARRAY:
+			return new JLazyArrayNode(this, token);
+		case VALUE_STRING:
+			return new JValueNode<String>(text(token));
+		default:
+			literal(token, builder);
+			return builder.getRoot();
+		}
+	}
+
+	/**
+	 * Returns element of array for the token: numbers and booleans are returned
+	 * as Long, Double or Boolean, other values as {@link #node(int, JTreeBuilder)}
+	 * does.
+	 *
+	 * @param token
+	 *          index of value token.
+	 * @param builder
+	 *          builder of nodes of values.
+	 * @return JNode, Long, Double or Boolean
+	 * @throws JParserException
+	 *           if literal value is wrong.
+	 */
+	Object element(final int token, final JTreeBuilder builder) throws JParserException {
+		if (kinds[token] != JParseEvent.VALUE.ordinal()) {
+			return node(token, builder);
+		}
+		Scalar scalar = new Scalar();
+		literal(token, scalar);
+		return scalar.value;
+	}
+
+	/**
+	 * Parse literal value (number, true, false or null) of the token and pass
+	 * it to handler.
+	 *
+	 * @param token
+	 *          index of VALUE token.
+	 * @param handler
+	 *          receives the value.
+	 * @throws JParserException
+	 *           if literal value is wrong.
+	 */
+	private void literal(final int token, final JParseHandler handler) throws JParserException {
+		int from = starts[token];
+		int length = ends[token] - from;
+		if (length > literal.length) {
+			literal = new char[length];
+		}
+		for (int i = 0; i < length; i++) {
+			literal[i] = (char) (text[from + i] & 0xFF);
+		}
+		if (!JParser.valueParse(literal, length, handler)) {
+			JParser.doubleParse(text(token), handler);
+		}
+	}
+}
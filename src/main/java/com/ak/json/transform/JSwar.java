@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.transform;
+
+//CSOFF: Magic
+/**
+ * Class JSwar contains bit tricks that test 8 bytes of text at once ("SIMD
+ * within a register"). A word is 8 bytes read as little-endian long, so the
+ * first byte of the word is its lowest byte.
+ * <p>
+ * Masks returned by methods have the high bit set in every byte that matches
+ * and zero in all other bits. Index of first matching byte is
+ * {@code Long.numberOfTrailingZeros(mask) >>> 3}.
+ *
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+final class JSwar {
+	/** Number of bytes in a word. */
+	static final int WORD = 8;
+	/** High bit of every byte. */
+	static final long HIGHS = 0x8080808080808080L;
+	/** Low 7 bits of every byte. */
+	private static final long LOWS = 0x7F7F7F7F7F7F7F7FL;
+	/** Byte 0x01 repeated. */
+	private static final long ONES = 0x0101010101010101L;
+	/** Symbol '"' repeated. */
+	private static final long QUOTES = ONES * '"';
+	/** Symbol '\\' repeated. */
+	private static final long BACKSLASHES = ONES * '\\';
+	/** Symbol '\n' repeated. */
+	private static final long NEWLINES = ONES * '\n';
+	/** Symbol '\r' repeated. */
+	private static final long RETURNS = ONES * '\r';
+	/** Symbol ' ' repeated. */
+	private static final long SPACES = ONES * ' ';
+	/** Symbol '\t' repeated. */
+	private static final long TABS = ONES * '\t';
+	/** Symbol '{' repeated; '[' differs from it only by bit 0x20. */
+	private static final long OPENS = ONES * '{';
+	/** Symbol '}' repeated; ']' differs from it only by bit 0x20. */
+	private static final long CLOSES = ONES * '}';
+
+	/**
+	 * Utility class.
+	 */
+	private JSwar() {
+	}
+
+	/**
+	 * Returns mask of bytes of word that are equal to the symbol. The result is
+	 * exact: carries do not propagate between bytes.
+	 *
+	 * @param word
+	 *          8 bytes of text.
+	 * @param pattern
+	 *          symbol repeated in every byte.
+	 * @return mask
+	 */
+	static long match(final long word, final long pattern) {
+		long t = word ^ pattern;
+		return ~(((t & LOWS) + LOWS) | t) & HIGHS;
+	}
+
+	/**
+	 * Returns mask of '"' bytes.
+	 *
+	 * @param word
+	 *          8 bytes of text.
+	 * @return mask
+	 */
+	static long quotes(final long word) {
+		return match(word, QUOTES);
+	}
+
+	/**
+	 * Returns mask of bytes that stop scanning of string content: '"', '\\',
+	 * '\n' and '\r'.
+	 *
+	 * @param word
+	 *          8 bytes of text.
+	 * @return mask
+	 */
+	static long stringSpecials(final long word) {
+		return match(word, QUOTES) | match(word, BACKSLASHES) | match(word, NEWLINES) | match(word, RETURNS);
+	}
+
+	/**
+	 * Returns mask of white space bytes: ' ', '\n', '\r' and '\t'. Rare '\b' and
+	 * '\f' are not included, callers check them byte by byte.
+	 *
+	 * @param word
+	 *          8 bytes of text.
+	 * @return mask
+	 */
+	static long whitespaces(final long word) {
+		return match(word, SPACES) | match(word, NEWLINES) | match(word, RETURNS) | match(word, TABS);
+	}
+
+	/**
+	 * Returns mask of bytes that matter while skipping of value: '"', '\\',
+	 * '{', '[', '}' and ']'. Brackets are matched with bit 0x20 set, so '[' is
+	 * found as '{' and ']' as '}'; no other byte becomes a bracket this way.
+	 *
+	 * @param word
+	 *          8 bytes of text.
+	 * @return mask
+	 */
+	static long nesting(final long word) {
+		long folded = word | SPACES;
+		return match(word, QUOTES) | match(word, BACKSLASHES) | match(folded, OPENS) | match(folded, CLOSES);
+	}
+
+	/**
+	 * Returns bits of all bytes before the first byte marked in mask.
+	 *
+	 * @param mask
+	 *          non zero mask.
+	 * @return bits below the first marked byte
+	 */
+	static long before(final long mask) {
+		return (mask & -mask) - 1;
+	}
+
+	/**
+	 * Returns index of the first byte marked in mask.
+	 *
+	 * @param mask
+	 *          non zero mask.
+	 * @return index from 0 to 7
+	 */
+	static int first(final long mask) {
+		return Long.numberOfTrailingZeros(mask) >>> 3;
+	}
+}
@@ -0,0 +1,393 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.transform;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class JSymbolTable is a bounded cache of strings: field names or repeated
+ * string values. Parser looks up a string by symbols of the token directly in
+ * its window and gets the same String instance for all occurrences of the
+ * string, so a document with many records keeps one copy of each key and map
+ * lookups by the keys hit by identity.
+ * <p>
+ * The table is a fixed array of slots addressed by hash of the string (the
+ * same hash as String.hashCode()); two neighbour slots are probed and a new
+ * string replaces an old one when both are occupied, so size of the table
+ * never grows. Only ASCII strings not longer than the length limit are cached.
+ * <p>
+ * A table is used by one thread: cache of a parser is a {@link PerThread}
+ * that gives every thread its own table, so tables are read and written
+ * without locking. Statistics of all tables of the cache are summed in
+ * counters that are safe to update from many threads.
+ *
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+final class JSymbolTable {
+	/** Default limit of length of cached string. */
+	static final int MAX_LENGTH = 64;
+	/** Estimated size of String object and header of its array in bytes. */
+	private static final int STRING_OVERHEAD = 40;
+
+	/** Slots of the table. */
+	private final String[] slots;
+	/** Mask of slot index. */
+	private final int mask;
+	/** Longest cached string. */
+	private final int maxLength;
+	/** Cache the table belongs to, it counts statistics. */
+	private final PerThread cache;
+
+	/**
+	 * Class PerThread is a cache of strings shared by threads: every thread
+	 * gets its own table of the same size, statistics are common.
+	 */
+	static final class PerThread extends ThreadLocal<JSymbolTable> {
+		/** Number of slots of every table. */
+		private final int capacity;
+		/** Longest cached string. */
+		private final int maxLength;
+		/** Number of lookups. */
+		private final LongAdder lookups = new LongAdder();
+		/** Number of lookups that found string in a table. */
+		private final LongAdder hits = new LongAdder();
+		/** Estimated size of strings that were not created because of hits. */
+		private final LongAdder savedBytes = new LongAdder();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param size
+		 *          number of slots, rounded up to power of 2.
+		 */
+		PerThread(final int size) {
+			this(size, MAX_LENGTH);
+		}
+
+		/**
+		 * Constructor.
+		 *
+		 * @param size
+		 *          number of slots, rounded up to power of 2.
+		 * @param pMaxLength
+		 *          longest cached string.
+		 */
+		PerThread(final int size, final int pMaxLength) {
+			this.capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+			this.maxLength = pMaxLength;
+		}
+
+		@Override
+		protected JSymbolTable initialValue() {
+			return newTable();
+		}
+
+		/**
+		 * Returns new empty table of the cache that is not bound to a thread.
+		 * It is used by parsers that can be moved between threads.
+		 *
+		 * @return JSymbolTable
+		 */
+		JSymbolTable newTable() {
+			return new JSymbolTable(this);
+		}
+
+		/**
+		 * Returns number of slots of every table.
+		 *
+		 * @return int
+		 */
+		int size() {
+			return capacity;
+		}
+
+		/**
+		 * Returns snapshot of statistics of all tables of the cache.
+		 *
+		 * @return JCacheStats
+		 */
+		JCacheStats stats() {
+			return new JCacheStats(lookups.sum(), hits.sum(), savedBytes.sum());
+		}
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pCache
+	 *          cache the table belongs to.
+	 */
+	private JSymbolTable(final PerThread pCache) {
+		this.slots = new String[pCache.capacity];
+		this.mask = pCache.capacity - 1;
+		this.maxLength = pCache.maxLength;
+		this.cache = pCache;
+	}
+
+	/**
+	 * Returns longest cached string.
+	 *
+	 * @return int
+	 */
+	int maxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * Count hit of lookup.
+	 *
+	 * @param s
+	 *          found string.
+	 * @return the string.
+	 */
+	private String hit(final String s) {
+		cache.hits.increment();
+		cache.savedBytes.add((STRING_OVERHEAD + s.length() + 7) & ~7);
+		return s;
+	}
+
+	/**
+	 * Returns canonical String for symbols of array.
+	 *
+	 * @param buf
+	 *          array of symbols.
+	 * @param from
+	 *          index of first symbol.
+	 * @param to
+	 *          index after last symbol.
+	 * @return String
+	 */
+	String get(final char[] buf, final int from, final int to) {
+		cache.lookups.increment();
+		int length = to - from;
+		if (length > maxLength) {
+			return new String(buf, from, length);
+		}
+		int hash = 0;
+		for (int i = from; i < to; i++) {
+			hash = 31 * hash + buf[i];
+		}
+		int index = hash & mask;
+		for (int probe = 0; probe < 2; probe++) {
+			String s = slots[(index + probe) & mask];
+			if (s != null && s.hashCode() == hash && s.length() == length && equals(s, buf, from)) {
+				return hit(s);
+			}
+		}
+		return put(index, new String(buf, from, length));
+	}
+
+	/**
+	 * Returns canonical String for symbols of sequence.
+	 *
+	 * @param chars
+	 *          sequence of symbols.
+	 * @param from
+	 *          index of first symbol.
+	 * @param to
+	 *          index after last symbol.
+	 * @return String
+	 */
+	String get(final CharSequence chars, final int from, final int to) {
+		cache.lookups.increment();
+		int length = to - from;
+		if (length > maxLength) {
+			return chars.subSequence(from, to).toString();
+		}
+		int hash = 0;
+		for (int i = from; i < to; i++) {
+			hash = 31 * hash + chars.charAt(i);
+		}
+		int index = hash & mask;
+		for (int probe = 0; probe < 2; probe++) {
+			String s = slots[(index + probe) & mask];
+			if (s != null && s.hashCode() == hash && s.length() == length && equals(s, chars, from)) {
+				return hit(s);
+			}
+		}
+		return put(index, chars.subSequence(from, to).toString());
+	}
+
+	/**
+	 * Returns canonical String for ASCII bytes of array.
+	 *
+	 * @param buf
+	 *          array of bytes.
+	 * @param from
+	 *          index of first byte.
+	 * @param to
+	 *          index after last byte.
+	 * @return String
+	 */
+	String get(final byte[] buf, final int from, final int to) {
+		cache.lookups.increment();
+		int length = to - from;
+		if (length > maxLength) {
+			return new String(buf, from, length, StandardCharsets.ISO_8859_1);
+		}
+		int hash = 0;
+		for (int i = from; i < to; i++) {
+			hash = 31 * hash + buf[i];
+		}
+		int index = hash & mask;
+		for (int probe = 0; probe < 2; probe++) {
+			String s = slots[(index + probe) & mask];
+			if (s != null && s.hashCode() == hash && s.length() == length && equals(s, buf, from)) {
+				return hit(s);
+			}
+		}
+		return put(index, new String(buf, from, length, StandardCharsets.ISO_8859_1));
+	}
+
+	/**
+	 * Returns canonical String for ASCII bytes of buffer.
+	 *
+	 * @param buf
+	 *          buffer of bytes.
+	 * @param from
+	 *          index of first byte.
+	 * @param to
+	 *          index after last byte.
+	 * @return String
+	 */
+	String get(final ByteBuffer buf, final int from, final int to) {
+		cache.lookups.increment();
+		int length = to - from;
+		if (length <= maxLength) {
+			int hash = 0;
+			for (int i = from; i < to; i++) {
+				hash = 31 * hash + buf.get(i);
+			}
+			int index = hash & mask;
+			for (int probe = 0; probe < 2; probe++) {
+				String s = slots[(index + probe) & mask];
+				if (s != null && s.hashCode() == hash && s.length() == length && equals(s, buf, from)) {
+					return hit(s);
+				}
+			}
+		}
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = buf.get(from + i);
+		}
+		String s = new String(bytes, StandardCharsets.ISO_8859_1);
+		return (length <= maxLength) ? put(s.hashCode() & mask, s) : s;
+	}
+
+	/**
+	 * Put new name to the table: to empty slot of two probed or over the first one.
+	 *
+	 * @param index
+	 *          first probed slot.
+	 * @param s
+	 *          the name.
+	 * @return the name.
+	 */
+	private String put(final int index, final String s) {
+		int next = (index + 1) & mask;
+		if (slots[index] != null && slots[next] == null) {
+			slots[next] = s;
+		} else {
+			slots[index] = s;
+		}
+		return s;
+	}
+
+	/**
+	 * Compare String with symbols.
+	 *
+	 * @param s
+	 *          String.
+	 * @param buf
+	 *          symbols.
+	 * @param from
+	 *          index of first symbol.
+	 * @return true if symbols are the same.
+	 */
+	private static boolean equals(final String s, final char[] buf, final int from) {
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) != buf[from + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compare String with symbols of sequence.
+	 *
+	 * @param s
+	 *          String.
+	 * @param chars
+	 *          symbols.
+	 * @param from
+	 *          index of first symbol.
+	 * @return true if symbols are the same.
+	 */
+	private static boolean equals(final String s, final CharSequence chars, final int from) {
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) != chars.charAt(from + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compare String with ASCII bytes.
+	 *
+	 * @param s
+	 *          String.
+	 * @param buf
+	 *          bytes.
+	 * @param from
+	 *          index of first byte.
+	 * @return true if symbols are the same.
+	 */
+	private static boolean equals(final String s, final byte[] buf, final int from) {
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) != buf[from + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compare String with ASCII bytes of buffer.
+	 *
+	 * @param s
+	 *          String.
+	 * @param buf
+	 *          bytes.
+	 * @param from
+	 *          index of first byte.
+	 * @return true if symbols are the same.
+	 */
+	private static boolean equals(final String s, final ByteBuffer buf, final int from) {
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) != buf.get(from + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
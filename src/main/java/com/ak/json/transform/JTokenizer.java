@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.transform;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.ak.json.JParseEvent;
+import com.ak.json.JParserException;
+
+/**
+ * Class JTokenizer is a base of tokenizer layer of JParser. Tokenizer splits
+ * source of JSON text into sequence of parsing events (tokens). Text of a token
+ * is available through {@link #getText()} until next call of {@link #next()}.
+ * <p>
+ * Tokenizer keeps behavior of original JParser reader: a scalar value absorbs
+ * following ',' symbol, so DELIMITER event is generated only after closing
+ * brackets; a string or a literal followed by ':' is reported as FIELD_NAME.
+ *
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+abstract class JTokenizer implements Closeable {
+	/** Text of structural tokens indexed by JParseEvent ordinal. */
+	protected static final String[] SYMBOLS = new String[] {"{", "[", "}", "]", null, null, null, ","};
+
+	/** Symbols that terminate literal (not quoted) value. */
+	protected static final boolean[] TERMINATORS = new boolean[128];
+	static {
+		for (char c : new char[] {' ', '\n', '\r', '\t', '\b', '\f', ',', ':', '[', ']', '{', '}', '"'}) {
+			TERMINATORS[c] = true;
+		}
+	}
+
+	/** Event of the current token. */
+	protected JParseEvent event;
+	/** Offset of the first symbol of the current token in the document. */
+	protected long tokenOffset;
+	/** True if the current scalar value absorbed the following ','. */
+	protected boolean comma;
+	/** Cache of field names. Null if names are not cached. */
+	JSymbolTable symbols;
+	/** Cache of string values. Null if values are not cached. */
+	JSymbolTable values;
+
+	/**
+	 * Read next token from source.
+	 *
+	 * @return JParseEvent of the token or null if end of source is reached.
+	 * @throws IOException
+	 *           while reading from source.
+	 * @throws JParserException
+	 *           if symbol is not expected.
+	 */
+	abstract JParseEvent next() throws IOException, JParserException;
+
+	/**
+	 * Skip the rest of container whose START_OBJECT or START_ARRAY is the
+	 * current token. Only nesting of brackets and bounds of strings (with escape
+	 * sequences) are tracked: tokens are not reported, strings are not decoded
+	 * and syntax inside the container is not checked. Closing bracket of the
+	 * container becomes the current token.
+	 *
+	 * @return END_OBJECT or END_ARRAY of the closing bracket or null if end of
+	 *         source is reached.
+	 * @throws IOException
+	 *           while reading from source.
+	 */
+	abstract JParseEvent skipContainer() throws IOException;
+
+	/**
+	 * Returns text of the current token. For FIELD_NAME and VALUE_STRING it is a
+	 * content of the string without quotes.
+	 *
+	 * @return String
+	 */
+	abstract String getText();
+
+	/**
+	 * Copy symbols of the current VALUE token to array. Only ASCII symbols are
+	 * copied correctly, other symbols are replaced by symbols above 0x7F.
+	 *
+	 * @param dest
+	 *          array to fill.
+	 * @return length of the token; if it is bigger than length of array then
+	 *         nothing is copied.
+	 */
+	abstract int copyText(char[] dest);
+
+	/**
+	 * Reads the rest of source and returns all symbols except white spaces.
+	 *
+	 * @return String
+	 * @throws IOException
+	 *           while reading from source.
+	 */
+	abstract String flush() throws IOException;
+
+	/**
+	 * Returns number of symbols consumed from source so far.
+	 *
+	 * @return long
+	 */
+	abstract long getOffset();
+
+	/**
+	 * Returns offset of the first symbol of the current token (opening quote for
+	 * strings) in the document.
+	 *
+	 * @return long
+	 */
+	long getTokenOffset() {
+		return tokenOffset;
+	}
+
+	/**
+	 * Returns event of the current token.
+	 *
+	 * @return JParseEvent
+	 */
+	JParseEvent getEvent() {
+		return event;
+	}
+
+	/**
+	 * Check if the current scalar value (VALUE or VALUE_STRING) absorbed the
+	 * following ','. Comma after a container is returned as DELIMITER token.
+	 *
+	 * @return boolean
+	 */
+	boolean hasComma() {
+		return comma;
+	}
+
+	/**
+	 * Check if symbol is white space.
+	 *
+	 * @param c
+	 *          symbol
+	 * @return boolean
+	 */
+	protected static boolean isWhitespace(final int c) {
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\b' || c == '\f';
+	}
+
+	/**
+	 * Check if symbol terminates literal value.
+	 *
+	 * @param c
+	 *          symbol
+	 * @return boolean
+	 */
+	protected static boolean isTerminator(final int c) {
+		return (c & ~0x7F) == 0 && TERMINATORS[c];
+	}
+}
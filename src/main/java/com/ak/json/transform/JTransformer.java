@@ -42,7 +42,7 @@ public class JTransformer {
   private JNode originDoc;
   /** */
   private JNode template;
-  /** */
+  /** Parser is thread safe and is shared by all transformers. */
   private static JParser parser = new JParser();
   /** */
   protected static final boolean DEBUG = false;
@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.transform;
+
+import com.ak.json.JInstrumentalNode;
+import com.ak.json.JNode;
+import com.ak.json.JParseHandler;
+import com.ak.json.JParserException;
+import com.ak.json.nodetree.JArrayNode;
+import com.ak.json.nodetree.JNodeType;
+import com.ak.json.nodetree.JNumberNode;
+import com.ak.json.nodetree.JObjectNode;
+import com.ak.json.nodetree.JValueNode;
+
+/**
+ * Class JTreeBuilder is JParseHandler that builds JNode tree. Current node of
+ * the tree is the innermost opened container.
+ * <p>
+ * Types of values are the same as original JParser produced: integer number is
+ * INTEGER if it fits to int and LONG otherwise, other number is FLOAT if it
+ * fits to float and DOUBLE otherwise.
+ *
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+class JTreeBuilder implements JParseHandler {
+	/** Pull parser that feeds the builder. Used for error messages only. */
+	private final JPullParser pull;
+	/** Root node of the tree. */
+	private JNode root;
+	/** Innermost opened container. */
+	private JNode current;
+	/** Field name of the next member of current OBJECT. */
+	private String savedKey;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param pPull
+	 *          pull parser that feeds the builder, can be null.
+	 */
+	JTreeBuilder(final JPullParser pPull) {
+		this.pull = pPull;
+	}
+
+	/**
+	 * Returns root node of the built tree.
+	 *
+	 * @return JNode
+	 */
+	JNode getRoot() {
+		return root;
+	}
+
+	@Override
+	public void startObject() throws JParserException {
+		startContainer(new JObjectNode());
+	}
+
+	@Override
+	public void endObject() {
+		endContainer();
+	}
+
+	@Override
+	public void startArray() throws JParserException {
+		startContainer(new JArrayNode());
+	}
+
+	@Override
+	public void endArray() {
+		if (current instanceof JArrayNode) {
+			((JArrayNode) current).trimToSize();
+		}
+		endContainer();
+	}
+
+	@Override
+	public void fieldName(final String name) {
+		savedKey = name;
+	}
+
+	@Override
+	public void value(final String value) throws JParserException {
+		addValue(new JValueNode<String>(value));
+	}
+
+	@Override
+	public void value(final long value) throws JParserException {
+		if (current instanceof JArrayNode) {
+			((JArrayNode) current).addLong(value);
+		} else {
+			addValue(JNumberNode.valueOf(value));
+		}
+	}
+
+	@Override
+	public void value(final double value) throws JParserException {
+		if (current instanceof JArrayNode) {
+			((JArrayNode) current).addDouble(value);
+		} else {
+			addValue(JNumberNode.valueOf(value));
+		}
+	}
+
+	@Override
+	public void value(final boolean value) throws JParserException {
+		if (current instanceof JArrayNode) {
+			((JArrayNode) current).addBoolean(value);
+		} else {
+			addValue(new JValueNode<Boolean>(Boolean.valueOf(value)));
+		}
+	}
+
+	@Override
+	public void nullValue() throws JParserException {
+		addValue(new JValueNode<Object>());
+	}
+
+	/**
+	 * Returns innermost opened container.
+	 *
+	 * @return JNode or null if no container is opened.
+	 */
+	JNode getCurrent() {
+		return current;
+	}
+
+	/**
+	 * Add new container to the tree and make it current.
+	 *
+	 * @param container
+	 *          OBJECT or ARRAY node.
+	 * @throws JParserException
+	 *           if member of OBJECT has no field name.
+	 */
+	private void startContainer(final JNode container) throws JParserException {
+		addValue(container);
+		current = container;
+		if (pull != null) {
+			pull.context = current;
+		}
+	}
+
+	/**
+	 * Make parent of current container current. After the end of root there
+	 * is no current container.
+	 */
+	private void endContainer() {
+		if (current != null) {
+			current = current.getParent();
+			if (pull != null) {
+				pull.context = current;
+			}
+		}
+	}
+
+	/**
+	 * Add node to current container or make it root if there is no container.
+	 *
+	 * @param node
+	 *          node to add.
+	 * @throws JParserException
+	 *           if member of OBJECT has no field name.
+	 */
+	void addValue(final JNode node) throws JParserException {
+		if (current == null) {
+			root = node;
+		} else if (current.getType() == JNodeType.OBJECT) {
+			if (savedKey == null) {
+				throw new JParserException("Json syntax : value without field name");
+			}
+			current.addNode(((JInstrumentalNode) node).setKey(savedKey));
+		} else {
+			current.addNode(node);
+		}
+		savedKey = null;
+	}
+}
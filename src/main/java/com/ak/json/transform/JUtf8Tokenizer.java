@@ -0,0 +1,483 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ak.json.transform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import com.ak.json.JParseEvent;
+import com.ak.json.JParserException;
+
+/**
+ * Class JUtf8Tokenizer scans UTF-8 encoded JSON text without decoding it to
+ * chars. All structural symbols of JSON are ASCII, so they are found directly
+ * in bytes; only content of strings and literals is decoded, and only when
+ * text of token is requested. Content of strings and runs of white spaces are
+ * skipped 8 bytes per step (see {@link JSwar}).
+ *
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+class JUtf8Tokenizer extends JTokenizer {
+	/** Default size of the window. */
+	static final int DEFAULT_BUFFER_SIZE = 65536;
+
+	/** Source of bytes. Null if whole text is in the window. */
+	private final InputStream stream;
+	/** Window of bytes. */
+	protected byte[] buf;
+	/** Little-endian view of the window for reading of 8 byte words. */
+	private ByteBuffer words;
+	/** Cursor. */
+	protected int pos;
+	/** End of valid bytes in the window. */
+	protected int limit;
+	/** Start of the current token in the window. */
+	protected int start;
+	/** End of the current token in the window. */
+	protected int end;
+	/** Number of bytes dropped from the window before buf[0]. */
+	protected long dropped;
+	/** True if the current string token contains line breaks to be removed. */
+	private boolean hasLineBreaks;
+	/** True if the current token contains non ASCII symbols. */
+	private boolean hasNonAscii;
+	/** Cached text of the current token. */
+	private String text;
+
+	/**
+	 * Constructor for tokenizer reading from stream of bytes.
+	 *
+	 * @param pStream
+	 *          source of UTF-8 encoded text.
+	 */
+	JUtf8Tokenizer(final InputStream pStream) {
+		this.stream = pStream;
+		this.buf = JBufferRecycler.takeBytes(DEFAULT_BUFFER_SIZE);
+		this.words = wrap(buf);
+	}
+
+	/**
+	 * Constructor for tokenizer scanning part of array of bytes. The array is
+	 * not copied.
+	 *
+	 * @param bytes
+	 *          UTF-8 encoded JSON text.
+	 * @param offset
+	 *          index of first byte of the text.
+	 * @param length
+	 *          number of bytes of the text.
+	 */
+	JUtf8Tokenizer(final byte[] bytes, final int offset, final int length) {
+		this.stream = null;
+		this.buf = bytes;
+		this.words = wrap(bytes);
+		this.pos = offset;
+		this.start = offset;
+		this.limit = offset + length;
+		this.dropped = -offset;
+	}
+
+	/**
+	 * Read next block of bytes into the window. Bytes starting from the current
+	 * token are kept.
+	 *
+	 * @return false if end of stream is reached.
+	 * @throws IOException
+	 *           while reading from stream.
+	 */
+	protected boolean fill() throws IOException {
+		if (stream == null) {
+			return false;
+		}
+		compact(1);
+		int n = stream.read(buf, limit, buf.length - limit);
+		if (n <= 0) {
+			return false;
+		}
+		limit += n;
+		return true;
+	}
+
+	/**
+	 * Drop bytes before the current token from the window and grow the window if
+	 * there is not enough free space after that.
+	 *
+	 * @param space
+	 *          number of bytes that have to fit after the end of valid bytes.
+	 */
+	protected void compact(final int space) {
+		if (start > 0) {
+			System.arraycopy(buf, start, buf, 0, limit - start);
+			dropped += start;
+			limit -= start;
+			pos -= start;
+			end -= start;
+			start = 0;
+		}
+		if (buf.length - limit < space) {
+			byte[] newBuf = new byte[Math.max(buf.length * 2, limit + space)];
+			System.arraycopy(buf, 0, newBuf, 0, limit);
+			buf = newBuf;
+			words = wrap(newBuf);
+		}
+	}
+
+	/**
+	 * Create little-endian view of array.
+	 *
+	 * @param bytes
+	 *          array of bytes.
+	 * @return ByteBuffer
+	 */
+	private static ByteBuffer wrap(final byte[] bytes) {
+		return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Skip white spaces.
+	 *
+	 * @param keepToken
+	 *          if true then the current token is kept in the window.
+	 * @return next symbol (not consumed) or -1 if end of stream is reached.
+	 * @throws IOException
+	 *           while reading from stream.
+	 */
+	private int skipWhitespace(final boolean keepToken) throws IOException {
+		while (true) {
+			while (pos < limit) {
+				byte c = buf[pos];
+				if (!isWhitespace(c)) {
+					return c & 0xFF;
+				}
+				pos++;
+				while (pos + JSwar.WORD <= limit) {
+					long spaces = JSwar.whitespaces(words.getLong(pos));
+					if (spaces != JSwar.HIGHS) {
+						pos += JSwar.first(~spaces & JSwar.HIGHS);
+						break;
+					}
+					pos += JSwar.WORD;
+				}
+			}
+			if (!keepToken) {
+				start = pos;
+			}
+			if (!fill()) {
+				return -1;
+			}
+		}
+	}
+
+	@Override
+	JParseEvent next() throws IOException, JParserException {
+		text = null;
+		hasLineBreaks = false;
+		hasNonAscii = false;
+		if (dropped + pos == 0) {
+			skipByteOrderMark();
+		}
+		int c = skipWhitespace(false);
+		tokenOffset = dropped + pos;
+		start = pos;
+		end = pos + 1;
+		switch (c) {
+		case -1:
+			return event = null;
+		case '{':
+			pos++;
+			return event = JParseEvent.START_OBJECT;
+		case '[':
+			pos++;
+			return event = JParseEvent.START_ARRAY;
+		case '}':
+			pos++;
+			return event = JParseEvent.END_OBJECT;
+		case ']':
+			pos++;
+			return event = JParseEvent.END_ARRAY;
+		case ',':
+			pos++;
+			return event = JParseEvent.DELIMITER;
+		case ':':
+			throw new JParserException("Json syntax : unexpected symbol ':'", tokenOffset);
+		case '"':
+			pos++;
+			scanString();
+			return event = afterValue(JParseEvent.VALUE_STRING);
+		default:
+			scanLiteral();
+			return event = afterValue(JParseEvent.VALUE);
+		}
+	}
+
+	@Override
+	JParseEvent skipContainer() throws IOException {
+		text = null;
+		hasLineBreaks = false;
+		hasNonAscii = false;
+		int level = 1;
+		boolean inString = false;
+		// position of symbol after '\\' in string, it does not end the string
+		int escaped = -1;
+		while (true) {
+			while (pos < limit) {
+				long specials;
+				int length;
+				if (pos + JSwar.WORD <= limit) {
+					specials = JSwar.nesting(words.getLong(pos));
+					length = JSwar.WORD;
+				} else {
+					specials = JSwar.HIGHS >>> ((JSwar.WORD - 1) * JSwar.WORD);
+					length = 1;
+				}
+				while (specials != 0) {
+					int at = pos + JSwar.first(specials);
+					specials &= specials - 1;
+					if (at == escaped) {
+						continue;
+					}
+					byte c = buf[at];
+					if (inString) {
+						if (c == '"') {
+							inString = false;
+						} else if (c == '\\') {
+							escaped = at + 1;
+						}
+					} else if (c == '"') {
+						inString = true;
+					} else if (c == '{' || c == '[') {
+						level++;
+					} else if ((c == '}' || c == ']') && --level == 0) {
+						start = at;
+						tokenOffset = dropped + at;
+						end = pos = at + 1;
+						return event = (c == '}') ? JParseEvent.END_OBJECT : JParseEvent.END_ARRAY;
+					}
+				}
+				pos += length;
+			}
+			start = pos;
+			boolean escapedNext = escaped == pos;
+			if (!fill()) {
+				end = pos;
+				return event = null;
+			}
+			escaped = escapedNext ? pos : -1;
+		}
+	}
+
+	/**
+	 * Skip UTF-8 byte order mark at the beginning of the document.
+	 *
+	 * @throws IOException
+	 *           while reading from stream.
+	 */
+	private void skipByteOrderMark() throws IOException {
+		while (limit - pos < 3 && fill()) {
+			continue;
+		}
+		if (limit - pos >= 3 && buf[pos] == (byte) 0xEF && buf[pos + 1] == (byte) 0xBB && buf[pos + 2] == (byte) 0xBF) {
+			pos += 3;
+		}
+	}
+
+	/**
+	 * Scan string up to closing quote. Escape sequences are kept as is.
+	 *
+	 * @throws IOException
+	 *           while reading from stream.
+	 */
+	private void scanString() throws IOException {
+		start = pos;
+		while (true) {
+			while (pos < limit) {
+				if (pos + JSwar.WORD <= limit) {
+					long word = words.getLong(pos);
+					long specials = JSwar.stringSpecials(word);
+					if (specials == 0) {
+						hasNonAscii |= (word & JSwar.HIGHS) != 0;
+						pos += JSwar.WORD;
+						continue;
+					}
+					hasNonAscii |= (word & JSwar.before(specials) & JSwar.HIGHS) != 0;
+					pos += JSwar.first(specials);
+				}
+				byte c = buf[pos];
+				if (c == '"') {
+					end = pos++;
+					return;
+				}
+				if (c == '\\') {
+					if (pos + 1 >= limit) {
+						break;
+					}
+					pos += 2;
+					continue;
+				}
+				if (c < 0) {
+					hasNonAscii = true;
+				} else if (c == '\n' || c == '\r') {
+					hasLineBreaks = true;
+				}
+				pos++;
+			}
+			if (!fill()) {
+				end = pos = limit;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Scan literal value (number, true, false, null).
+	 *
+	 * @throws IOException
+	 *           while reading from stream.
+	 */
+	private void scanLiteral() throws IOException {
+		start = pos;
+		while (true) {
+			while (pos < limit) {
+				byte c = buf[pos];
+				if (isTerminator(c)) {
+					end = pos;
+					return;
+				}
+				if (c < 0) {
+					hasNonAscii = true;
+				}
+				pos++;
+			}
+			if (!fill()) {
+				end = pos;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Look ahead after scalar value: ':' turns value into FIELD_NAME, ',' is
+	 * absorbed by the value.
+	 *
+	 * @param valueEvent
+	 *          event of the scanned value.
+	 * @return JParseEvent
+	 * @throws IOException
+	 *           while reading from stream.
+	 */
+	private JParseEvent afterValue(final JParseEvent valueEvent) throws IOException {
+		int c = skipWhitespace(true);
+		comma = false;
+		if (c == ':') {
+			pos++;
+			return JParseEvent.FIELD_NAME;
+		}
+		if (c == ',') {
+			pos++;
+			comma = true;
+		}
+		return valueEvent;
+	}
+
+	@Override
+	String getText() {
+		if (text == null && event != null) {
+			String symbol = SYMBOLS[event.ordinal()];
+			if (symbol != null) {
+				text = symbol;
+			} else if (event == JParseEvent.FIELD_NAME && symbols != null && !hasNonAscii && !hasLineBreaks) {
+				text = symbols.get(buf, start, end);
+			} else if (event == JParseEvent.VALUE_STRING && values != null && !hasNonAscii && !hasLineBreaks) {
+				text = values.get(buf, start, end);
+			} else {
+				text = decode(start, end);
+			}
+		}
+		return text;
+	}
+
+	/**
+	 * Decode bytes of the window to String.
+	 *
+	 * @param from
+	 *          index of first byte.
+	 * @param to
+	 *          index after last byte.
+	 * @return String
+	 */
+	private String decode(final int from, final int to) {
+		if (hasLineBreaks) {
+			byte[] filtered = new byte[to - from];
+			int length = 0;
+			for (int i = from; i < to; i++) {
+				if (buf[i] != '\n' && buf[i] != '\r') {
+					filtered[length++] = buf[i];
+				}
+			}
+			return new String(filtered, 0, length, StandardCharsets.UTF_8);
+		}
+		return new String(buf, from, to - from,
+				hasNonAscii ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+	}
+
+	@Override
+	int copyText(final char[] dest) {
+		int length = end - start;
+		if (length <= dest.length) {
+			for (int i = 0; i < length; i++) {
+				dest[i] = (char) (buf[start + i] & 0xFF);
+			}
+		}
+		return length;
+	}
+
+	@Override
+	String flush() throws IOException {
+		ByteArrayOutputStream rest = new ByteArrayOutputStream();
+		start = pos;
+		while (pos < limit || fill()) {
+			byte c = buf[pos++];
+			if (!isWhitespace(c)) {
+				rest.write(c);
+			}
+			start = pos;
+		}
+		return new String(rest.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Override
+	long getOffset() {
+		return dropped + pos;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (stream != null) {
+			if (buf != null) {
+				JBufferRecycler.release(buf);
+				buf = null;
+			}
+			stream.close();
+		}
+	}
+}
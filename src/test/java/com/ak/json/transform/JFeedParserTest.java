@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+//CSOFF: Magic
+package com.ak.json.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ak.json.JNode;
+import com.ak.json.JParseEvent;
+import com.ak.json.JParserException;
+
+/**
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+public class JFeedParserTest {
+  /** Messages of a connection. */
+  private static final String[] MESSAGES = {
+    "{\"id\" : 1, \"text\" : \"caf\u00e9 \\\"quoted\\\"\", \"values\" : [1.5, -2, true, null]}",
+    "[{\"a\" : {}}, [], \"x\"]",
+    "{\"big\" : 12345678901, \"names\" : [\"one\", \"two\", \"three\"], \"nested\" : {\"deep\" : [[[]]]}}",
+    "\"plain string\"",
+    "42"
+  };
+
+  /**
+   * Documents fed by chunks of any size are equal to documents parsed at once.
+   * @throws IOException while parsing
+   * @throws JParserException while parsing
+   */
+  @Test
+  public void testNodes() throws IOException, JParserException {
+    List<String> expected = new ArrayList<String>();
+    StringBuilder sb = new StringBuilder("\ufeff");
+    for (String message : MESSAGES) {
+      expected.add(new JParser().parse(message).toJson());
+      sb.append(message).append("\r\n ");
+    }
+    byte[] text = sb.toString().getBytes(StandardCharsets.UTF_8);
+    for (int chunk = 1; chunk <= text.length; chunk += (chunk < 20) ? 1 : 37) {
+      JFeedParser feed = new JFeedParser();
+      List<String> actual = new ArrayList<String>();
+      for (int i = 0; i < text.length; i += chunk) {
+        feed.feed(ByteBuffer.wrap(text, i, Math.min(chunk, text.length - i)));
+        JNode node;
+        while ((node = feed.nextNode()) != null) {
+          actual.add(node.toJson());
+        }
+      }
+      feed.endOfInput();
+      JNode node;
+      while ((node = feed.nextNode()) != null) {
+        actual.add(node.toJson());
+      }
+      assertEquals("chunk " + chunk, expected, actual);
+    }
+  }
+
+  /**
+   * Events are available as soon as their tokens are fed.
+   * @throws JParserException while parsing
+   */
+  @Test
+  public void testEvents() throws JParserException {
+    JFeedParser feed = new JFeedParser();
+    assertEquals("", JParseEvent.NEED_MORE_INPUT, feed.nextEvent());
+    feed.feed(ByteBuffer.wrap("{\"name\" : \"val".getBytes(StandardCharsets.UTF_8)));
+    assertEquals("", JParseEvent.START_OBJECT, feed.nextEvent());
+    assertEquals("", JParseEvent.FIELD_NAME, feed.nextEvent());
+    assertEquals("", "name", feed.getText());
+    assertEquals("", JParseEvent.NEED_MORE_INPUT, feed.nextEvent());
+    assertNull("", feed.getText());
+    assertEquals("", JParseEvent.NEED_MORE_INPUT, feed.nextEvent());
+    feed.feed(ByteBuffer.wrap("ue\", \"n\" : 1".getBytes(StandardCharsets.UTF_8)));
+    assertEquals("", JParseEvent.VALUE_STRING, feed.nextEvent());
+    assertEquals("", "value", feed.getText());
+    assertEquals("", JParseEvent.FIELD_NAME, feed.nextEvent());
+    // the number can be continued by the next chunk
+    assertEquals("", JParseEvent.NEED_MORE_INPUT, feed.nextEvent());
+    feed.feed(ByteBuffer.wrap("5}".getBytes(StandardCharsets.UTF_8)));
+    assertEquals("", JParseEvent.VALUE, feed.nextEvent());
+    assertEquals("", 15, feed.getLong());
+    assertEquals("", JParseEvent.END_OBJECT, feed.nextEvent());
+    assertEquals("", 0, feed.getDepth());
+    assertEquals("", JParseEvent.NEED_MORE_INPUT, feed.nextEvent());
+    feed.endOfInput();
+    assertNull("", feed.nextEvent());
+  }
+
+  /**
+   * Syntax errors are reported with the same messages as by JParser.
+   */
+  @Test
+  public void testErrors() {
+    for (String[] test : Arrays.asList(
+        new String[] {"{\"a\":,\"b\":1}", "Json syntax : wrong position for ','"},
+        new String[] {"[[{\"a\":true}]", "Json syntax : opened parentheses do not match closed parentheses. Difference: '{' = 0 '[' = 1"},
+        new String[] {"{\"a\":2} [1,2}", "Json syntax : wrong symbol } after [1,2]}"})) {
+      JFeedParser feed = new JFeedParser();
+      byte[] text = test[0].getBytes(StandardCharsets.UTF_8);
+      try {
+        for (byte b : text) {
+          feed.feed(ByteBuffer.wrap(new byte[] {b}));
+          while (feed.nextNode() != null) {
+            continue;
+          }
+        }
+        feed.endOfInput();
+        while (feed.nextNode() != null) {
+          continue;
+        }
+        fail("error is not detected in " + test[0]);
+      } catch (JParserException e) {
+        assertEquals(test[0], test[1], e.getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+//CSOFF: Magic
+package com.ak.json.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ak.json.JNode;
+import com.ak.json.JParserException;
+
+/**
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+public class JLinesParserTest {
+  /** */
+  private static ExecutorService executor;
+  /** */
+  private static String text;
+  /** */
+  private static Map<Long, String> expected = new TreeMap<Long, String>();
+
+  /**
+   * Generates NDJSON text with empty lines, CR LF line ends and one line longer than chunk.
+   * @throws IOException while parsing
+   * @throws JParserException while parsing
+   */
+  @BeforeClass
+  public static void setUpBeforeClass() throws IOException, JParserException {
+    executor = Executors.newFixedThreadPool(4);
+    JParser parser = new JParser();
+    StringBuilder sb = new StringBuilder();
+    for (int i = 1; i <= 3000; i++) {
+      String line;
+      if (i % 100 == 0) {
+        line = "";
+      } else if (i == 1500) {
+        StringBuilder big = new StringBuilder("[");
+        for (int j = 0; j < 500; j++) {
+          big.append(j == 0 ? "" : ",").append("\"item \u20ac ").append(j).append('"');
+        }
+        line = big.append(']').toString();
+      } else {
+        line = "{\"id\" : " + i + ", \"name\" : \"line " + i + "\", \"values\" : [" + i * 0.5 + ", true, null]}";
+      }
+      sb.append(line).append(i % 7 == 0 ? "\r\n" : "\n");
+      if (!line.isEmpty()) {
+        expected.put((long) i, parser.parse(line).toJson());
+      }
+    }
+    sb.append("{\"last\" : \"no line end\"}");
+    expected.put(3001L, "{\"last\":\"no line end\"}");
+    text = sb.toString();
+  }
+
+  /** */
+  @AfterClass
+  public static void tearDownAfterClass() {
+    executor.shutdown();
+  }
+
+  /**
+   * Documents are delivered in order of lines.
+   * @throws IOException while parsing
+   * @throws JParserException while parsing
+   */
+  @Test
+  public void testOrdered() throws IOException, JParserException {
+    JLinesParser lines = new JLinesParser(executor);
+    lines.setChunkSize(1000);
+    final List<Long> numbers = new ArrayList<Long>();
+    final Map<Long, String> parsed = new TreeMap<Long, String>();
+    long count = lines.parse(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), new JLinesParser.LineHandler() {
+      @Override
+      public void line(final long lineNumber, final JNode node) {
+        numbers.add(lineNumber);
+        parsed.put(lineNumber, node.toJson());
+      }
+    });
+    assertEquals("", expected.size(), count);
+    assertEquals("", new ArrayList<Long>(expected.keySet()), numbers);
+    assertEquals("", expected, parsed);
+  }
+
+  /**
+   * Chunks are delivered as soon as they are parsed.
+   * @throws IOException while parsing
+   * @throws JParserException while parsing
+   */
+  @Test
+  public void testUnordered() throws IOException, JParserException {
+    JLinesParser lines = new JLinesParser(executor);
+    lines.setChunkSize(4096);
+    lines.setMaxPending(3);
+    lines.setOrdered(false);
+    final Map<Long, String> parsed = new TreeMap<Long, String>();
+    lines.parse(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), new JLinesParser.LineHandler() {
+      @Override
+      public void line(final long lineNumber, final JNode node) {
+        parsed.put(lineNumber, node.toJson());
+      }
+    });
+    assertEquals("", expected, parsed);
+  }
+
+  /**
+   * Wrong line is reported with its number.
+   * @throws IOException while parsing
+   */
+  @Test
+  public void testError() throws IOException {
+    String bad = "{\"a\" : 1}\n\n{\"a\" : 2}}\n{\"a\" : 3}\n";
+    try {
+      new JLinesParser().parse(new ByteArrayInputStream(bad.getBytes(StandardCharsets.UTF_8)), new JLinesParser.LineHandler() {
+        @Override
+        public void line(final long lineNumber, final JNode node) {
+          assertEquals("", 1L, lineNumber);
+        }
+      });
+      fail("error is not detected");
+    } catch (JParserException e) {
+      assertEquals("", "Line 3: Unexpected symbol(s) near end of document '}}'.", e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+//CSOFF: Magic
+package com.ak.json.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ak.json.JNode;
+import com.ak.json.JParserException;
+import com.ak.json.nodetree.JArrayNode;
+import com.ak.json.nodetree.JValueType;
+
+/**
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+public class JParallelParserTest {
+  /** */
+  private static ExecutorService executor;
+
+  /**
+   * Creates executor.
+   */
+  @BeforeClass
+  public static void setUpBeforeClass() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  /**
+   * Stops executor.
+   */
+  @AfterClass
+  public static void tearDownAfterClass() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Creates parser that splits documents to small chunks.
+   * @param parallelism number of chunks
+   * @return JParallelParser
+   */
+  private static JParallelParser parallel(final int parallelism) {
+    JParallelParser parallel = new JParallelParser(executor);
+    parallel.setParallelism(parallelism);
+    parallel.setMinChunkSize(1);
+    return parallel;
+  }
+
+  /**
+   * Tree built by parallel parser is equal to tree built by sequential parser
+   * for any number of chunks, wherever chunks are cut.
+   * @throws IOException while parsing
+   * @throws JParserException while parsing
+   */
+  @Test
+  public void testSameTree() throws IOException, JParserException {
+    StringBuilder sb = new StringBuilder("{\"records\" : [");
+    for (int i = 0; i < 200; i++) {
+      sb.append(i == 0 ? "" : ",").append("\n  {\"id\" : ").append(i)
+          .append(", \"name\" : \"item, {[ \\\"").append(i).append("\\\\\", \"tags\" : [")
+          .append(i % 3 == 0 ? "" : "\"a\", \"b\\u20ac\", [1, {}, []]").append("], \"price\" : ")
+          .append(i * 1.25).append(", \"text\" : \"caf\u00e9 \\\\\\\" end\", \"ok\" : true, \"none\" : null}");
+    }
+    sb.append("],\n \"total\" : {\"count\" : 200, \"big\" : 12345678901}}");
+    byte[] text = sb.toString().getBytes(StandardCharsets.UTF_8);
+    JNode expected = new JParser().parse(sb.toString());
+    for (int chunks : new int[] {2, 3, 7, 16, 61, 500}) {
+      JNode node = parallel(chunks).parse(text);
+      assertEquals("chunks " + chunks, expected.toJson(), node.toJson());
+      assertTrue("chunks " + chunks, expected.equals(node));
+    }
+    byte[] bookStore = Files.readAllBytes(new File("src/test/resources/book_store.json").toPath());
+    assertEquals("", new JParser().parse(new File("src/test/resources/book_store.json")).toJson(),
+        parallel(13).parse(bookStore).toJson());
+  }
+
+  /**
+   * Arrays of numbers and booleans cut by chunks keep values without nodes and
+   * are trimmed like arrays built by sequential parser.
+   * @throws IOException while parsing
+   * @throws JParserException while parsing
+   */
+  @Test
+  public void testPrimitiveArrays() throws IOException, JParserException {
+    StringBuilder longs = new StringBuilder();
+    StringBuilder doubles = new StringBuilder();
+    StringBuilder booleans = new StringBuilder();
+    for (int i = 0; i < 300; i++) {
+      longs.append(i == 0 ? "" : ", ").append(i * 1000L);
+      doubles.append(i == 0 ? "" : ", ").append(i * 0.5 + 0.25);
+      booleans.append(i == 0 ? "" : ", ").append(i % 3 == 0);
+    }
+    String json = "{\"l\" : [" + longs + "], \"d\" : [" + doubles + "], \"b\" : [" + booleans + "]}";
+    JNode expected = new JParser().parse(json);
+    for (int chunks : new int[] {2, 7, 61}) {
+      JNode node = parallel(chunks).parse(json.getBytes(StandardCharsets.UTF_8));
+      assertEquals("chunks " + chunks, expected.toJson(), node.toJson());
+      JArrayNode l = (JArrayNode) node.getNode("l");
+      JArrayNode d = (JArrayNode) node.getNode("d");
+      JArrayNode b = (JArrayNode) node.getNode("b");
+      assertEquals("chunks " + chunks, JValueType.LONG, l.getPrimitiveType());
+      assertEquals("chunks " + chunks, JValueType.DOUBLE, d.getPrimitiveType());
+      assertEquals("chunks " + chunks, JValueType.BOOLEAN, b.getPrimitiveType());
+      assertTrue("chunks " + chunks, l.getLongArray() == l.getLongArray());
+      assertTrue("chunks " + chunks, d.getDoubleArray() == d.getDoubleArray());
+      assertEquals("chunks " + chunks, 300, l.getLongArray().length);
+    }
+  }
+
+  /**
+   * Parallel parser reports the same errors as sequential one.
+   * @throws IOException while parsing
+   */
+  @Test
+  public void testErrors() throws IOException {
+    for (String test : new String [] {
+      "{\"a\" : [1, 2, 3, 4, 5, 6, 7, 8], \"b\" : [1, 2, 3, 4, 5, 6, 7, 8],}}",
+      "[{\"a\" : 1}, {\"b\" : 2}, {\"c\" : 3}, {\"d\" : 4}, {\"e\" : 5}, {\"f\" : 6}}",
+      "[[1, 2, 3], [4, 5, 6], [7, 8, 9], [10, 11, 12], [13, 14, 15]",
+      "{\"a\" : {\"b\" : [1, 2, 3]}, \"c\" : {\"d\" : [4, 5, 6]}, \"e\" : [7, \"f\" : 8]}",
+      "{\"a\" : [1, 2, 3], \"b\" : [4, 5, 6], \"c\" : [7, 8, 9], \"d\" : 10} , ",
+      "{\"a\" : [1, 2, 3], \"b\" : [4, 5, 6], \"c\" : [7, 8, 9], 10, \"d\" : 11}",
+      "{\"a\" : [1, 2, 3], \"b\" : [4, 5, 6], \"c\" : [7, 8, 9], \"d\" : 1x1}",
+      "{\"a\" : [1, 2, 3], \"b\" : [4, 5, 6], \"c\" : [7, 8, 9] \"d\" : 10, \"e\" : 11}",
+      "{\"a\" : [1, 2, 3], \"b\" : [4, 5, 6], \"c\" : 7 \"d\" : [8, 9, 10], \"e\" : 11}",
+      "[[1, 2, 3], [4, 5, 6], [7, 8, 9], [10, 11 12], [13, 14, 15]]",
+      "[[1, 2, 3], [4, 5, 6], [7, 8, 9], [10, 11, 12,], [13, 14, 15]]",
+      "{\"a\" : {\"b\" : [1, 2, 3], \"c\" : [4, 5, 6], [7, 8, 9]}, \"d\" : [10, 11, 12]}",
+      "{\"a\" : {\"b\" : [1, 2, 3], \"c\" : [4, 5, 6], \"e\" : 7, 8}, \"d\" : [10, 11, 12]}",
+      "[{\"a\" : 1, \"b\" : 2}, {\"c\" : 3, {\"d\" : 4}}, {\"e\" : 5, \"f\" : 6}]"
+    }) {
+      String message = null;
+      try {
+        new JParser().parse(test);
+        fail("error is not detected by sequential parser in " + test);
+      } catch (JParserException e) {
+        message = e.getMessage();
+      }
+      for (int chunks = 2; chunks < 12; chunks++) {
+        try {
+          parallel(chunks).parse(test.getBytes(StandardCharsets.UTF_8));
+          fail("error is not detected in " + test);
+        } catch (JParserException e) {
+          assertEquals(test, message, e.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * Position of chunk is moved out of strings and after ',', '{' or '['.
+   */
+  @Test
+  public void testCut() {
+    byte[] text = "[\"a,b\\\",c\", {\"d\" : 1}]".getBytes(StandardCharsets.UTF_8);
+    assertEquals("", 4, JParallelParser.countQuotes(text, 0, text.length));
+    assertEquals("", 1, JParallelParser.cut(text, 0, false));
+    assertEquals("", 11, JParallelParser.cut(text, 3, true));
+    assertEquals("", 11, JParallelParser.cut(text, 7, true));
+    assertEquals("", 13, JParallelParser.cut(text, 11, false));
+  }
+}
@@ -0,0 +1,443 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+//CSOFF: Magic
+package com.ak.json.transform;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import com.ak.json.JNode;
+
+/**
+ * Simple throughput benchmark for JParser. It is not a unit test: run main() from IDE
+ * or with <code>java -cp target/classes:target/test-classes com.ak.json.transform.JParserBenchmark [size in MB]</code>
+ * to see MB/s figures of the parser on book_store.json document and on large generated documents.
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+public final class JParserBenchmark {
+  /** Number of warm up rounds. */
+  private static final int WARMUP = 5;
+  /** Number of measured rounds. */
+  private static final int ROUNDS = 10;
+  /** Only test cases which names contain the filter are measured. */
+  private static String filter = "";
+
+  /**
+   * Constructor avoids instantiation.
+   */
+  private JParserBenchmark() { }
+
+  /**
+   * @param args optional parameters: size of generated documents in megabytes.
+   * @throws Exception if something goes wrong.
+   */
+  public static void main(final String[] args) throws Exception {
+    int sizeMb = (args.length > 0) ? Integer.parseInt(args[0]) : 32;
+    JParser parser = new JParser();
+
+    String bookStore = new String(Files.readAllBytes(Paths.get("src/test/resources/book_store.json")), StandardCharsets.UTF_8);
+    File bookStoreBig = generate("book_store_big", sizeMb, true);
+    File minified = generate("records_min", sizeMb, false);
+
+    filter = (args.length > 1) ? args[1] : "";
+    measureString("book_store.json (String)", parser, bookStore, 2000);
+    measureFile("book_store x N, indented (File)", parser, bookStoreBig);
+    measureFile("generated records, minified (File)", parser, minified);
+    measureReader("generated records, minified (Reader)", parser, minified);
+    measureMapped("generated records, minified (mapped File)", parser, minified);
+    measureLazy("generated records, minified (lazy, one path)", parser, minified);
+    measureProjected("generated records, minified (projected File)", parser, minified,
+        new JProjection("/book-store/*/book/price"));
+    measureParallel("generated records, minified (parallel File)", new JParallelParser(), minified);
+    measureParallel("book_store x N, indented (parallel File)", new JParallelParser(), bookStoreBig);
+    measureTokenizer("tokenizer only, UTF-8 bytes", minified, "bytes");
+    measureTokenizer("tokenizer only, chars", minified, "chars");
+    measureTokenizer("tokenizer only, mapped file", minified, "mapped");
+    measureTokenizer("tokenizer only, UTF-8 bytes, indented", bookStoreBig, "bytes");
+    measureTokenizer("tokenizer only, mapped file, indented", bookStoreBig, "mapped");
+    measureSkip("skip root value, UTF-8 bytes", minified, "bytes");
+    measureSkip("skip root value, chars", minified, "chars");
+    measureSkip("skip root value, mapped file", minified, "mapped");
+    measureSkip("skip root value, UTF-8 bytes, indented", bookStoreBig, "bytes");
+    measureString("generated records, minified (String)", parser, new String(Files.readAllBytes(minified.toPath()), StandardCharsets.UTF_8), 1);
+    measureInPlace("generated records, minified (StringBuilder)", parser, minified, "chars");
+    measureInPlace("generated records, minified (heap ByteBuffer)", parser, minified, "heap");
+    measureInPlace("generated records, minified (direct ByteBuffer)", parser, minified, "direct");
+    measureInPlace("generated records, minified (FileChannel)", parser, minified, "channel");
+  }
+
+  /**
+   * Measures parsing of a String.
+   * @param name name of test case.
+   * @param parser parser under test.
+   * @param text document.
+   * @param repeat how many times parse the document in one round.
+   * @throws Exception if parsing fails.
+   */
+  static void measureString(final String name, final JParser parser, final String text, final int repeat) throws Exception {
+    if (!name.contains(filter)) {
+      return;
+    }
+    long bytes = (long) text.length() * repeat;
+    long best = Long.MAX_VALUE;
+    for (int r = 0; r < WARMUP + ROUNDS; r++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < repeat; i++) {
+        consume(parser.parse(text));
+      }
+      long time = System.nanoTime() - start;
+      if (r >= WARMUP) {
+        best = Math.min(best, time);
+      }
+    }
+    report(name, bytes, best);
+  }
+
+  /**
+   * Measures parsing of a document from CharSequence, ByteBuffer or channel.
+   * Text is read into memory before measuring, except of channel.
+   * @param name name of test case.
+   * @param parser parser under test.
+   * @param file document.
+   * @param kind type of input: chars, heap, direct or channel.
+   * @throws Exception if parsing fails.
+   */
+  static void measureInPlace(final String name, final JParser parser, final File file, final String kind) throws Exception {
+    if (!name.contains(filter)) {
+      return;
+    }
+    byte[] bytes = Files.readAllBytes(file.toPath());
+    StringBuilder chars = new StringBuilder(new String(bytes, StandardCharsets.UTF_8));
+    ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+    direct.put(bytes).flip();
+    long best = Long.MAX_VALUE;
+    for (int r = 0; r < WARMUP + ROUNDS; r++) {
+      long start = System.nanoTime();
+      switch (kind) {
+        case "chars":
+          consume(parser.parse(chars));
+          break;
+        case "heap":
+          consume(parser.parse(ByteBuffer.wrap(bytes)));
+          break;
+        case "direct":
+          consume(parser.parse(direct));
+          break;
+        default:
+          consume(parser.parse(FileChannel.open(file.toPath())));
+          break;
+      }
+      long time = System.nanoTime() - start;
+      if (r >= WARMUP) {
+        best = Math.min(best, time);
+      }
+    }
+    report(name, bytes.length, best);
+  }
+
+  /**
+   * Measures parsing of a File.
+   * @param name name of test case.
+   * @param parser parser under test.
+   * @param file document.
+   * @throws Exception if parsing fails.
+   */
+  static void measureFile(final String name, final JParser parser, final File file) throws Exception {
+    if (!name.contains(filter)) {
+      return;
+    }
+    long best = Long.MAX_VALUE;
+    for (int r = 0; r < WARMUP + ROUNDS; r++) {
+      long start = System.nanoTime();
+      consume(parser.parse(file));
+      long time = System.nanoTime() - start;
+      if (r >= WARMUP) {
+        best = Math.min(best, time);
+      }
+    }
+    report(name, file.length(), best);
+  }
+
+  /**
+   * Measures parallel parsing of a File.
+   * @param name name of test case.
+   * @param parallel parser under test.
+   * @param file document.
+   * @throws Exception if parsing fails.
+   */
+  static void measureParallel(final String name, final JParallelParser parallel, final File file) throws Exception {
+    if (!name.contains(filter)) {
+      return;
+    }
+    long best = Long.MAX_VALUE;
+    for (int r = 0; r < WARMUP + ROUNDS; r++) {
+      long start = System.nanoTime();
+      consume(parallel.parse(file));
+      long time = System.nanoTime() - start;
+      if (r >= WARMUP) {
+        best = Math.min(best, time);
+      }
+    }
+    report(name + " x" + parallel.getParallelism(), file.length(), best);
+  }
+
+  /**
+   * Measures parsing of a memory mapped File.
+   * @param name name of test case.
+   * @param parser parser under test.
+   * @param file document.
+   * @throws Exception if parsing fails.
+   */
+  static void measureMapped(final String name, final JParser parser, final File file) throws Exception {
+    if (!name.contains(filter)) {
+      return;
+    }
+    long best = Long.MAX_VALUE;
+    for (int r = 0; r < WARMUP + ROUNDS; r++) {
+      long start = System.nanoTime();
+      consume(parser.parseMapped(file));
+      long time = System.nanoTime() - start;
+      if (r >= WARMUP) {
+        best = Math.min(best, time);
+      }
+    }
+    report(name, file.length(), best);
+  }
+
+  /**
+   * Measures lazy parsing of a File followed by access to one value.
+   * @param name name of test case.
+   * @param parser parser under test.
+   * @param file document.
+   * @throws Exception if parsing fails.
+   */
+  static void measureLazy(final String name, final JParser parser, final File file) throws Exception {
+    if (!name.contains(filter)) {
+      return;
+    }
+    long best = Long.MAX_VALUE;
+    for (int r = 0; r < WARMUP + ROUNDS; r++) {
+      long start = System.nanoTime();
+      JNode root = parser.parseLazy(file);
+      consume(root.getNode("book-store").getNode(100).getNode("book").getNode("price"));
+      long time = System.nanoTime() - start;
+      if (r >= WARMUP) {
+        best = Math.min(best, time);
+      }
+    }
+    report(name, file.length(), best);
+  }
+
+  /**
+   * Measures parsing of a File that builds only projected parts of the tree.
+   * @param name name of test case.
+   * @param parser parser under test.
+   * @param file document.
+   * @param projection selects parts of document.
+   * @throws Exception if parsing fails.
+   */
+  static void measureProjected(final String name, final JParser parser, final File file, final JProjection projection)
+      throws Exception {
+    if (!name.contains(filter)) {
+      return;
+    }
+    long best = Long.MAX_VALUE;
+    for (int r = 0; r < WARMUP + ROUNDS; r++) {
+      long start = System.nanoTime();
+      consume(parser.parse(file, projection));
+      long time = System.nanoTime() - start;
+      if (r >= WARMUP) {
+        best = Math.min(best, time);
+      }
+    }
+    report(name, file.length(), best);
+  }
+
+  /**
+   * Measures parsing of a File through char Reader.
+   * @param name name of test case.
+   * @param parser parser under test.
+   * @param file document.
+   * @throws Exception if parsing fails.
+   */
+  static void measureReader(final String name, final JParser parser, final File file) throws Exception {
+    if (!name.contains(filter)) {
+      return;
+    }
+    long best = Long.MAX_VALUE;
+    for (int r = 0; r < WARMUP + ROUNDS; r++) {
+      long start = System.nanoTime();
+      consume(parser.parse(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)));
+      long time = System.nanoTime() - start;
+      if (r >= WARMUP) {
+        best = Math.min(best, time);
+      }
+    }
+    report(name, file.length(), best);
+  }
+
+  /**
+   * Measures tokenizer without tree construction.
+   * @param name name of test case.
+   * @param file document.
+   * @param kind type of tokenizer: bytes, chars or mapped.
+   * @throws Exception if parsing fails.
+   */
+  static void measureTokenizer(final String name, final File file, final String kind) throws Exception {
+    if (!name.contains(filter)) {
+      return;
+    }
+    long best = Long.MAX_VALUE;
+    for (int r = 0; r < WARMUP + ROUNDS; r++) {
+      long start = System.nanoTime();
+      JTokenizer tokenizer;
+      switch (kind) {
+        case "chars":
+          tokenizer = new JCharTokenizer(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+          break;
+        case "mapped":
+          tokenizer = new JMappedFileTokenizer(file);
+          break;
+        default:
+          tokenizer = new JUtf8Tokenizer(new FileInputStream(file));
+          break;
+      }
+      long count = 0;
+      while (tokenizer.next() != null) {
+        count += tokenizer.getText().length();
+      }
+      tokenizer.close();
+      sink = count;
+      long time = System.nanoTime() - start;
+      if (r >= WARMUP) {
+        best = Math.min(best, time);
+      }
+    }
+    report(name, file.length(), best);
+  }
+
+  /**
+   * Measures skipping of the whole root value by tokenizer. Text is read into
+   * memory before measuring, except of mapped file.
+   * @param name name of test case.
+   * @param file document.
+   * @param kind type of tokenizer: bytes, chars or mapped.
+   * @throws Exception if parsing fails.
+   */
+  static void measureSkip(final String name, final File file, final String kind) throws Exception {
+    if (!name.contains(filter)) {
+      return;
+    }
+    byte[] bytes = Files.readAllBytes(file.toPath());
+    String text = new String(bytes, StandardCharsets.UTF_8);
+    long best = Long.MAX_VALUE;
+    for (int r = 0; r < WARMUP + ROUNDS; r++) {
+      long start = System.nanoTime();
+      JTokenizer tokenizer;
+      switch (kind) {
+        case "chars":
+          tokenizer = new JCharTokenizer(text);
+          break;
+        case "mapped":
+          tokenizer = new JMappedFileTokenizer(file);
+          break;
+        default:
+          tokenizer = new JUtf8Tokenizer(bytes, 0, bytes.length);
+          break;
+      }
+      tokenizer.next();
+      sink = tokenizer.skipContainer();
+      tokenizer.close();
+      long time = System.nanoTime() - start;
+      if (r >= WARMUP) {
+        best = Math.min(best, time);
+      }
+    }
+    System.out.printf("%-45s %10.2f GB/s  (%d bytes in %.2f ms)%n",
+        name, (file.length() / 1073741824.0) / (best / 1e9), file.length(), best / 1e6);
+  }
+
+  /**
+   * Prints result.
+   * @param name name of test case.
+   * @param bytes size of processed input.
+   * @param nanos best time.
+   */
+  static void report(final String name, final long bytes, final long nanos) {
+    System.out.printf("%-45s %10.1f MB/s  (%d bytes in %.2f ms)%n",
+        name, (bytes / 1048576.0) / (nanos / 1e9), bytes, nanos / 1e6);
+  }
+
+  /** Keeps JIT from eliminating parsing results. */
+  private static volatile Object sink;
+
+  /**
+   * @param node parsed tree.
+   */
+  private static void consume(final JNode node) {
+    sink = node;
+  }
+
+  /**
+   * Generates test document as a temporary file. Document is an array of records.
+   * @param prefix file name prefix.
+   * @param sizeMb approximate size of document in megabytes.
+   * @param indented if true the document is pretty printed.
+   * @return File
+   * @throws IOException if file cannot be written.
+   */
+  static File generate(final String prefix, final int sizeMb, final boolean indented) throws IOException {
+    File file = File.createTempFile(prefix, ".json");
+    file.deleteOnExit();
+    String nl = indented ? "\n" : "";
+    String in = indented ? "  " : "";
+    long limit = (long) sizeMb * 1048576;
+    try (Writer w = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+      w.write("{\"book-store\":[" + nl);
+      long written = 0;
+      for (int i = 0; written < limit; i++) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(i == 0 ? "" : "," + nl)
+          .append(in).append("{").append(nl)
+          .append(in).append(in).append("\"book\" : {").append(nl)
+          .append(in).append(in).append(in).append("\"title\" : \"Title of the book number ").append(i).append("\",").append(nl)
+          .append(in).append(in).append(in).append("\"author\" : {\"first-name\" : \"Stephen\", \"last-name\" : \"King\"},").append(nl)
+          .append(in).append(in).append(in).append("\"price\" : ").append(i % 100).append('.').append(i % 97).append(",").append(nl)
+          .append(in).append(in).append(in).append("\"year\" : ").append(1900 + i % 120).append(",").append(nl)
+          .append(in).append(in).append(in).append("\"instock\" : ").append(i % 3 == 0).append(",").append(nl)
+          .append(in).append(in).append(in).append("\"tags\" : [\"novel\", \"fiction\", \"usd\", ").append(i).append("]").append(nl)
+          .append(in).append(in).append("}").append(nl)
+          .append(in).append("}");
+        w.write(sb.toString());
+        written += sb.length();
+      }
+      w.write(nl + "]}" + nl);
+    }
+    return file;
+  }
+}
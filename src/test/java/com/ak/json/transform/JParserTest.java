@@ -22,10 +22,23 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -35,10 +48,15 @@ import org.junit.Test;
 
 import com.ak.json.JInstrumentalNode;
 import com.ak.json.JNode;
+import com.ak.json.JParseEvent;
+import com.ak.json.JParseHandler;
 import com.ak.json.JParserException;
 import com.ak.json.nodetree.JArrayNode;
+import com.ak.json.nodetree.JNodeType;
+import com.ak.json.nodetree.JNumberNode;
 import com.ak.json.nodetree.JObjectNode;
 import com.ak.json.nodetree.JValueNode;
+import com.ak.json.nodetree.JValueType;
 
 /**
  * @author krasnop@bellsouth.net (Alexei Krasnopolski)
@@ -200,6 +218,63 @@ public class JParserTest {
 		} catch (JParserException e) {
 			assertEquals("", "Json syntax : opened parentheses do not match closed parentheses. Difference: '{' = 0 '[' = 1", e.getMessage());
 		}
+
+		try {
+			docTree = parser.parse("{\"a\":1 \"b\":2}");
+			fail("failed test #5 doc: " + docTree);
+		} catch (JParserException e) {
+			assertEquals("", "Json syntax : wrong format <VALUE,FIELD_NAME>", e.getMessage());
+		}
+
+		try {
+			docTree = parser.parse("[1 2]");
+			fail("failed test #6 doc: " + docTree);
+		} catch (JParserException e) {
+			assertEquals("", "Json syntax : wrong format <VALUE,VALUE>", e.getMessage());
+		}
+	}
+
+	/**
+	 * Deeply nested document does not exhaust thread stack; nesting limit is
+	 * configurable.
+	 * @throws IOException  while parsing
+	 * @throws JParserException  while parsing
+	 */
+	@Test
+	public void testDeepNesting() throws IOException, JParserException {
+		int depth = 5000;
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < depth; i++) {
+			sb.append((i % 2 == 0) ? "[" : "{\"k\":");
+		}
+		sb.append("1");
+		for (int i = depth - 1; i >= 0; i--) {
+			sb.append((i % 2 == 0) ? "]" : "}");
+		}
+		JNode node = parser.parse(sb.toString());
+		int level = 0;
+		while (node.getType() != JNodeType.VALUE) {
+			node = (level % 2 == 0) ? node.getNode(0) : node.getNode("k");
+			level++;
+		}
+		assertEquals("", depth, level);
+		assertEquals("", new Integer(1), node.getValue());
+
+		JParser limited = new JParser();
+		limited.setMaxDepth(100);
+		try {
+			limited.parse(sb.toString());
+			fail("nesting limit is not checked");
+		} catch (JParserException e) {
+			assertEquals("", "Json syntax : nesting of objects and arrays is deeper than 100", e.getMessage());
+		}
+
+		try {
+			parser.parse("{\"a\":[1}");
+			fail("wrong closing bracket is not detected");
+		} catch (JParserException e) {
+			assertEquals("", "Json syntax : wrong symbol } after [1]}", e.getMessage());
+		}
 	}
 
 	/**
@@ -341,6 +416,284 @@ public class JParserTest {
 		}
 	}
 
+	/**
+	 * Test unboxed accessors of value nodes.
+	 * @throws IOException while parsing
+	 * @throws JParserException while parsing
+	 */
+	@Test
+	public void testPrimitiveValues() throws IOException, JParserException {
+		JNode doc = parser.parse("{\"i\":33024, \"l\":3147483647, \"f\":2.5, \"d\":1e300, \"s\":\"12\", \"b\":true, \"n\":null}");
+		JNode node = doc.getNode("i");
+		assertTrue("", node instanceof JNumberNode);
+		assertEquals("", 33024L, node.getLong());
+		assertEquals("", 33024.0, node.getDouble(), 0.0);
+		assertEquals("", Integer.valueOf(33024), node.getValue());
+		assertEquals("", new JValueNode<Integer>(33024), node);
+		assertEquals("", new JValueNode<Integer>(33024).hashCode(), node.hashCode());
+		assertEquals("", Long.valueOf(3147483647L), doc.getNode("l").getValue());
+		assertEquals("", 3147483647L, doc.getNode("l").getLong());
+		assertEquals("", Integer.valueOf(-1147483649), doc.getNode("l").getValue(Integer.class));
+		assertEquals("", Float.valueOf(2.5f), doc.getNode("f").getValue());
+		assertEquals("", 2L, doc.getNode("f").getLong());
+		assertEquals("", "2.5", doc.getNode("f").getValue(String.class));
+		assertEquals("", Double.valueOf(1e300), doc.getNode("d").getValue());
+		assertEquals("", 1e300, doc.getNode("d").getDouble(), 0.0);
+		assertEquals("", 12L, doc.getNode("s").getLong());
+		assertEquals("", Integer.valueOf(12), doc.getNode("s").getValue(Integer.class));
+		assertTrue("", doc.getNode("b").getBoolean());
+		assertEquals("", "null", doc.getNode("n").getValue(String.class));
+		assertEquals("", null, doc.getNode("n").getValue(Integer.class));
+		assertEquals("", "{\"i\":33024,\"l\":3147483647,\"f\":2.5,\"d\":1.0E300,\"s\":\"12\",\"b\":true,\"n\":null}", doc.toJson());
+		JNode copy = node.clone();
+		node.setValue("text");
+		assertEquals("", "\"text\"", node.toJson());
+		assertEquals("", Integer.valueOf(33024), copy.getValue());
+		try {
+			doc.getNode("b").getLong();
+			fail("boolean is not a number");
+		} catch (RuntimeException e) {
+			assertEquals("", "Try to get number from BOOLEAN value.", e.getMessage());
+		}
+	}
+
+	/**
+	 * Test order of properties of small and large objects.
+	 * @throws IOException while parsing
+	 * @throws JParserException while parsing
+	 */
+	@Test
+	public void testObjectProperties() throws IOException, JParserException {
+		for (int n : new int[] {0, 3, 8, 9, 40, 300}) {
+			StringBuilder sb = new StringBuilder("{");
+			List<String> names = new ArrayList<String>();
+			for (int i = 0; i < n; i++) {
+				String name = "f" + ((i * 7) % n);
+				names.add(name);
+				sb.append((i == 0) ? "" : ",").append('"').append(name).append("\":").append(i);
+			}
+			String json = sb.append('}').toString();
+			JObjectNode doc = (JObjectNode) parser.parse(json);
+			assertEquals("", json, doc.toJson());
+			assertEquals("", names, new ArrayList<String>(doc.fieldNames()));
+			assertEquals("", doc, parser.parse(json));
+			assertEquals("", parser.parse(json).hashCode(), doc.hashCode());
+			for (int i = 0; i < n; i++) {
+				assertEquals("", Long.valueOf(i), Long.valueOf(doc.getNode(names.get(i)).getLong()));
+			}
+			assertEquals("", null, doc.getNode("absent"));
+			assertEquals("", n, doc.childCount());
+			List<JNode> children = doc.getChildren();
+			for (int i = 0; i < n; i++) {
+				assertTrue("", doc.getNodeAt(i) == doc.getNode(names.get(i)));
+				assertTrue("", children.get(i) == doc.getNode(names.get(i)));
+			}
+			assertEquals("", (n > 3) ? 1 : 0, JPath.jpath("/3", doc).size());
+			assertEquals("", 0, JPath.jpath("/" + n, doc).size());
+			try {
+				doc.getNodeAt(n);
+				fail("no property at " + n);
+			} catch (IndexOutOfBoundsException e) {
+				assertEquals("", "Index: " + n + ", Size: " + n, e.getMessage());
+			}
+			try {
+				children.remove(0);
+				fail("children view is read only");
+			} catch (UnsupportedOperationException e) {
+				assertEquals("", n, doc.childCount());
+			}
+			// remove every second property, the rest keep their order
+			List<String> kept = new ArrayList<String>();
+			for (int i = 0; i < n; i++) {
+				if (i % 2 == 0) {
+					doc.removeNode(names.get(i));
+				} else {
+					kept.add(names.get(i));
+				}
+			}
+			assertEquals("", kept, new ArrayList<String>(doc.fieldNames()));
+			for (int i = 0; i < n; i++) {
+				if (i % 2 == 0) {
+					assertEquals("", null, doc.getNode(names.get(i)));
+				} else {
+					assertEquals("", Long.valueOf(i), Long.valueOf(doc.getNode(names.get(i)).getLong()));
+				}
+			}
+			doc.addNode("f1", new JValueNode<String>("replaced"));
+			doc.addNode("added", new JValueNode<String>("last"));
+			JNode last = null;
+			for (JNode child : doc) {
+				last = child;
+			}
+			assertEquals("", "\"last\"", last.toJson());
+			assertEquals("", (n > 1) ? "\"replaced\"" : null, (n > 1) ? doc.getNode("f1").toJson() : null);
+			Iterator<String> iterator = doc.fieldNames().iterator();
+			while (iterator.hasNext()) {
+				iterator.next();
+				iterator.remove();
+			}
+			assertEquals("", "{}", doc.toJson());
+		}
+	}
+
+	/**
+	 * Test arrays of numbers and booleans kept without nodes.
+	 * @throws IOException while parsing
+	 * @throws JParserException while parsing
+	 */
+	@Test
+	public void testPrimitiveArrays() throws IOException, JParserException {
+		String json = "[1,-5,3000000000,200]";
+		JArrayNode longs = (JArrayNode) parser.parse(json);
+		assertEquals("", JValueType.LONG, longs.getPrimitiveType());
+		assertTrue("", Arrays.equals(new long[] {1, -5, 3000000000L, 200}, longs.getLongArray()));
+		assertEquals("", json, longs.toJson());
+		assertEquals("", Long.valueOf(3000000000L), longs.getNode(2).getValue());
+		assertEquals("", Integer.valueOf(200), longs.getNodeAt(3).getValue());
+		assertEquals("", "3", ((JInstrumentalNode) longs.getNodeAt(3)).getPath()[0]);
+		assertTrue("", longs.getNodeAt(3).getParent() == longs);
+		JArrayNode nodes = new JArrayNode();
+		for (long value : new long[] {1, -5, 3000000000L, 200}) {
+			nodes.addNode(JNumberNode.valueOf(value));
+		}
+		assertEquals("", nodes, longs);
+		assertEquals("", longs, nodes);
+		assertEquals("", nodes.hashCode(), longs.hashCode());
+		assertEquals("", longs, longs.clone());
+		assertEquals("", "[3000000000, 200]", JPath.jpath("/1/following-sibling::.", longs).toString());
+		assertEquals("", "[1, -5]", JPath.jpath("/2/preceding-sibling::.", longs).toString());
+
+		JArrayNode doubles = (JArrayNode) parser.parse("[1.5, 0.1, 1e300]");
+		assertEquals("", JValueType.DOUBLE, doubles.getPrimitiveType());
+		assertTrue("", Arrays.equals(new double[] {1.5, 0.1, 1e300}, doubles.getDoubleArray()));
+		assertEquals("", "[1.5,0.1,1.0E300]", doubles.toJson());
+		assertTrue("", doubles.getDoubleArray() == doubles.getDoubleArray());
+		assertEquals("", Float.valueOf(0.1f), doubles.getNodeAt(1).getValue());
+
+		JArrayNode built = new JArrayNode();
+		built.addLong(4);
+		built.addLong(2);
+		assertTrue("", Arrays.equals(new long[] {4, 2}, built.getLongArray()));
+		assertTrue("", built.getLongArray() != built.getLongArray());
+		built.trimToSize();
+		assertTrue("", built.getLongArray() == built.getLongArray());
+		built.addLong(7);
+		assertTrue("", Arrays.equals(new long[] {4, 2, 7}, built.getLongArray()));
+
+		JArrayNode booleans = (JArrayNode) parser.parse("[true, false, true]");
+		assertEquals("", JValueType.BOOLEAN, booleans.getPrimitiveType());
+		assertEquals("", "{0, 2}", booleans.getBooleanArray().toString());
+		assertEquals("", "[true,false,true]", booleans.toJson());
+
+		assertEquals("", null, ((JArrayNode) parser.parse("[1, 2.5]")).getPrimitiveType());
+		assertEquals("", "[1,2.5]", parser.parse("[1, 2.5]").toJson());
+		assertEquals("", "[1,[2],true]", parser.parse("[1, [2], true]").toJson());
+		assertEquals("", "{\"a\":[7,8],\"b\":[]}", parser.parse("{\"a\":[7,8],\"b\":[]}").toJson());
+
+		// changes of structure turn the array to array of nodes
+		longs.addNode(1, new JValueNode<String>("x"));
+		assertEquals("", null, longs.getPrimitiveType());
+		assertEquals("", null, longs.getLongArray());
+		assertEquals("", "[1,\"x\",-5,3000000000,200]", longs.toJson());
+		Iterator<JNode> iterator = doubles.iterator();
+		iterator.next();
+		iterator.remove();
+		assertEquals("", "[0.1,1.0E300]", doubles.toJson());
+		booleans.addLong(5);
+		assertEquals("", "[true,false,true,5]", booleans.toJson());
+		assertEquals("", 4, booleans.getChildren().size());
+
+		// reading does not change storage, a node handed out is element of the array
+		JArrayNode fives = (JArrayNode) parser.parse("[5,7,5]");
+		assertEquals("", "[5,7,5]", fives.toJson());
+		assertEquals("", fives, fives.clone());
+		assertEquals("", JValueType.LONG, fives.getPrimitiveType());
+		assertTrue("", fives.getNodeAt(1) == fives.getNodeAt(1));
+		assertTrue("", fives.getChildren().get(1) == fives.getNodeAt(1));
+		for (JNode five : fives) {
+			assertEquals("", JValueType.LONG, fives.getPrimitiveType());
+			assertEquals("", "0", ((JInstrumentalNode) five).getKey());
+			break;
+		}
+		assertEquals("", "2", ((JInstrumentalNode) fives.getNode(2)).getKey());
+		assertEquals("", JValueType.LONG, fives.getPrimitiveType());
+		assertTrue("", Arrays.equals(new long[] {5, 7, 5}, fives.getLongArray()));
+		fives.getNodeAt(1).setValue(99);
+		assertEquals("", null, fives.getPrimitiveType());
+		assertEquals("", "[5,99,5]", fives.toJson());
+		JNode last = fives.getNodeAt(2);
+		fives.removeNode(last);
+		assertEquals("", "[5,99]", fives.toJson());
+		assertTrue("", fives.getNodeAt(0) != last);
+		fives.removeNode(new JValueNode<Integer>(5));
+		assertEquals("", "[99]", fives.toJson());
+	}
+
+	/**
+	 * Test keys of array elements: positions in the array.
+	 * @throws IOException while parsing
+	 * @throws JParserException while parsing
+	 */
+	@Test
+	public void testArrayKeys() throws IOException, JParserException {
+		JNode doc = parser.parse("{\"a\":[\"x\", \"x\", {\"b\":\"z\"}], \"c\":\"y\"}");
+		JNode array = doc.getNode("a");
+		JInstrumentalNode first = (JInstrumentalNode) array.getNodeAt(0);
+		JInstrumentalNode second = (JInstrumentalNode) array.getNodeAt(1);
+		JInstrumentalNode last = (JInstrumentalNode) array.getNodeAt(2).getNode("b");
+		assertEquals("", "0", first.getKey());
+		assertEquals("", "1", second.getKey());
+		assertEquals("", "[a, 2, b]", Arrays.toString(last.getPath()));
+		array.addNode(0, new JValueNode<String>("w"));
+		assertEquals("", "[a, 3, b]", Arrays.toString(last.getPath()));
+		assertEquals("", "2", second.getKey());
+		array.removeNode(0);
+		array.removeNode(0);
+		assertEquals("", "[a, 1, b]", Arrays.toString(last.getPath()));
+		assertEquals("", "0", second.getKey());
+		assertEquals("", null, first.getKey());
+		JNode moved = doc.getNode("c");
+		doc.removeNode("c");
+		array.addNode(moved);
+		assertEquals("", "[a, 2]", Arrays.toString(((JInstrumentalNode) moved).getPath()));
+		assertEquals("", "{\"a\":[\"x\",{\"b\":\"z\"},\"y\"]}", doc.toJson());
+		assertEquals("", doc, doc.clone());
+
+		// elements of primitive array get keys from positions when it turns to array of nodes
+		doc = parser.parse("{\"a\":[10,20,30]}");
+		array = doc.getNode("a");
+		array.removeNode(0);
+		JInstrumentalNode twenty = (JInstrumentalNode) array.getNodeAt(0);
+		assertEquals("", Integer.valueOf(20), ((JNode) twenty).getValue());
+		assertEquals("", "0", twenty.getKey());
+		assertEquals("", "[a, 0]", Arrays.toString(twenty.getPath()));
+		assertEquals("", "[a, 1]", Arrays.toString(((JInstrumentalNode) array.getNodeAt(1)).getPath()));
+		array.addNode(0, new JValueNode<Integer>(5));
+		assertEquals("", "1", twenty.getKey());
+		assertEquals("", "[a, 2]", Arrays.toString(((JInstrumentalNode) array.getNodeAt(2)).getPath()));
+		array.removeNode(1);
+		assertEquals("", null, twenty.getKey());
+		assertEquals("", "{\"a\":[5,30]}", doc.toJson());
+
+		// positions kept by elements follow changes made through list of children
+		JArrayNode strings = (JArrayNode) parser.parse("[\"a\", \"b\", \"c\", \"d\"]");
+		JInstrumentalNode d = (JInstrumentalNode) strings.getNodeAt(3);
+		Iterator<JNode> iterator = strings.getChildren().iterator();
+		iterator.next();
+		iterator.remove();
+		assertEquals("", "2", d.getKey());
+		strings.getChildren().add(0, new JValueNode<String>("z"));
+		strings.getChildren().add(new JValueNode<String>("e"));
+		assertEquals("", "3", d.getKey());
+		assertEquals("", "[\"z\",\"b\",\"c\",\"d\",\"e\"]", strings.toJson());
+		for (int i = 0; i < strings.childCount(); i++) {
+			assertEquals("", Integer.toString(i), ((JInstrumentalNode) strings.getNodeAt(i)).getKey());
+		}
+		strings.removeNode((JNode) d);
+		assertEquals("", null, d.getKey());
+		assertEquals("", "3", ((JInstrumentalNode) strings.getNodeAt(3)).getKey());
+	}
+
 	/**
 	 *
 	 * @throws IOException while parsing
@@ -421,6 +774,510 @@ public class JParserTest {
 
 	}
 
+	/**
+	 * Tokens crossing boundary of tokenizer window must be parsed the same way as
+	 * tokens inside the window.
+	 * @throws IOException while parsing
+	 * @throws JParserException while parsing
+	 */
+	@Test
+	public void testParseLongStream() throws IOException, JParserException {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < 2000; i++) {
+			sb.append(i == 0 ? "" : ",\n  ")
+				.append("{\"id\" : ").append(i)
+				.append(", \"name\" : \"name \\\" ").append(i).append("\"")
+				.append(", \"price\" : ").append(i).append(".25")
+				.append(", \"text\" : \"");
+			for (int j = 0; j < i % 50; j++) {
+				sb.append("abcdefghij");
+			}
+			sb.append("\"}");
+		}
+		sb.append("]");
+		String json = sb.toString();
+		JNode fromString = parser.parse(json);
+		JNode fromStream = parser.parse(new ByteArrayInputStream(json.getBytes("utf-8")));
+		assertEquals("", 2000, fromString.getChildren().size());
+		assertEquals("", fromString, fromStream);
+		assertEquals("", json.replaceAll(",\n  ", ",").replaceAll(" : ", ":").replaceAll(", ", ","), fromStream.toJson());
+		assertEquals("", "name \\\" 1999", fromStream.getNode(1999).getNode("name").getValue());
+	}
+
+	/**
+	 * UTF-8 byte tokenizer has to give the same result as char tokenizer.
+	 * @throws IOException while parsing
+	 * @throws JParserException while parsing
+	 */
+	@Test
+	public void testParseUtf8() throws IOException, JParserException {
+		StringBuilder sb = new StringBuilder("{");
+		for (int i = 0; i < 1000; i++) {
+			sb.append(i == 0 ? "" : ", ")
+				.append("\"\u043a\u043b\u044e\u0447 ").append(i).append("\" : ")
+				.append("[\"\u0437\u043d\u0430\u0447\u0435\u043d\u0438\u0435 \u20ac \ud83d\ude00\", ")
+				.append(i).append(", true, null, \"ascii\"]");
+		}
+		sb.append("}");
+		String json = sb.toString();
+		byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+		JNode fromBytes = parser.parse(new ByteArrayInputStream(bytes));
+		JNode fromChars = parser.parse(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+		assertEquals("", fromChars, fromBytes);
+		assertEquals("", parser.parse(json).toJson(), fromBytes.toJson());
+		assertEquals("", "\u0437\u043d\u0430\u0447\u0435\u043d\u0438\u0435 \u20ac \ud83d\ude00",
+				fromBytes.getNode("\u043a\u043b\u044e\u0447 999").getNode(0).getValue());
+
+		byte[] withBom = new byte[] {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, '[', '1', ']'};
+		assertEquals("", "[1]", parser.parse(new ByteArrayInputStream(withBom)).toJson());
+	}
+
+	/**
+	 * Parsing of memory mapped file. Small chunk size forces remapping of tokens
+	 * crossing chunk boundary.
+	 * @throws IOException while parsing
+	 * @throws JParserException while parsing
+	 */
+	@Test
+	public void testParseMapped() throws IOException, JParserException {
+		for (String fileName : fileList) {
+			assertEquals("failed: " + fileName, parser.parse(new File(fileName)), parser.parseMapped(new File(fileName)));
+		}
+		File file = File.createTempFile("mapped", ".json");
+		file.deleteOnExit();
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < 300; i++) {
+			sb.append(i == 0 ? "" : ",\n")
+				.append("{\"key \u20ac ").append(i).append("\" : \"value ").append(i).append("\", \"n\" : ").append(i * 1000003L).append("}");
+		}
+		sb.append("]");
+		Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			JTokenizer tokenizer = new JMappedFileTokenizer(raf, 100);
+			int count = 0;
+			while (tokenizer.next() != null) {
+				if (tokenizer.getEvent() == JParseEvent.FIELD_NAME && tokenizer.getText().startsWith("key")) {
+					assertEquals("", "key \u20ac " + count, tokenizer.getText());
+					count++;
+				}
+			}
+			assertEquals("", 300, count);
+		}
+		assertEquals("", parser.parse(sb.toString()), parser.parseMapped(file));
+	}
+
+	/**
+	 * Parsing of CharSequence, ByteBuffer and channel in place gives the same
+	 * trees as parsing of String. Long string value makes channel tokenizer grow
+	 * its window.
+	 * @throws IOException while parsing
+	 * @throws JParserException while parsing
+	 */
+	@Test
+	public void testParseInPlace() throws IOException, JParserException {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < 3000; i++) {
+			sb.append(i == 0 ? "" : ",\n")
+				.append("{\"key \u20ac ").append(i).append("\" : \"value\\\" ").append(i).append("\", \"n\" : ").append(i * 1000003L).append("}");
+		}
+		char[] longValue = new char[100000];
+		Arrays.fill(longValue, 'x');
+		sb.append(", \"").append(longValue).append("\"]");
+		List<String> documents = new ArrayList<String>();
+		for (String fileName : fileList) {
+			documents.add(new String(Files.readAllBytes(new File(fileName).toPath()), StandardCharsets.UTF_8));
+		}
+		documents.add(sb.toString());
+		parser.setValueCache(256, 32);
+		for (String json : documents) {
+			JNode expected = parser.parse(json);
+			byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+			assertEquals("", expected, parser.parse(new StringBuilder(json)));
+			assertEquals("", expected, parser.parse(CharBuffer.wrap(json)));
+			byte[] padded = new byte[bytes.length + 10];
+			System.arraycopy(bytes, 0, padded, 5, bytes.length);
+			ByteBuffer heap = ByteBuffer.wrap(padded, 5, bytes.length);
+			assertEquals("", expected, parser.parse(heap.slice()));
+			assertEquals("", expected, parser.parse(heap));
+			assertEquals("", 5, heap.position());
+			ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+			direct.put(bytes).flip();
+			assertEquals("", expected, parser.parse(direct));
+			// channel returns few bytes per read, so tokens cross end of the window
+			assertEquals("", expected, parser.parse(Channels.newChannel(new ByteArrayInputStream(bytes) {
+				@Override
+				public synchronized int read(final byte[] b, final int off, final int len) {
+					return super.read(b, off, Math.min(len, 1000));
+				}
+			})));
+		}
+
+		Pipe pipe = Pipe.open();
+		pipe.source().configureBlocking(false);
+		try {
+			parser.parse(pipe.source());
+			fail("non blocking channel is accepted");
+		} catch (IllegalArgumentException e) {
+			assertEquals("", "Channel is in non blocking mode, use JFeedParser to parse it", e.getMessage());
+		} finally {
+			pipe.source().close();
+			pipe.sink().close();
+		}
+	}
+
+	/**
+	 * Equal field names share one String instance.
+	 * @throws IOException while parsing
+	 * @throws JParserException while parsing
+	 */
+	@Test
+	public void testKeyCache() throws IOException, JParserException {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < 1000; i++) {
+			sb.append(i == 0 ? "" : ",").append("{\"name\" : \"n").append(i).append("\", \"Aa\" : 1, \"BB\" : 2, \"k").append(i % 3000).append("\" : 0}");
+		}
+		String doc = sb.append("]").toString();
+		JParser keyParser = new JParser();
+		assertEquals("", JParser.DEFAULT_KEY_CACHE_SIZE, keyParser.getKeyCacheSize());
+		for (JNode root : new JNode [] {keyParser.parse(doc),
+				keyParser.parse(new ByteArrayInputStream(doc.getBytes(StandardCharsets.UTF_8))),
+				keyParser.parseLazy(doc)}) {
+			assertEquals("", parser.parse(doc), root);
+			JNode first = root.getNode(0);
+			JNode last = root.getNode(999);
+			for (String key : new String [] {"name", "Aa", "BB"}) {
+				assertTrue(key, ((JInstrumentalNode) first.getNode(key)).getKey() == ((JInstrumentalNode) last.getNode(key)).getKey());
+			}
+			assertEquals("", Integer.valueOf(2), last.getNode("BB").getValue());
+		}
+		keyParser.setKeyCacheSize(0);
+		assertEquals("", 0, keyParser.getKeyCacheSize());
+		JNode root = keyParser.parse(doc);
+		assertTrue("", ((JInstrumentalNode) root.getNode(0).getNode("name")).getKey()
+				!= ((JInstrumentalNode) root.getNode(1).getNode("name")).getKey());
+	}
+
+	/**
+	 * Repeated string values share one String instance when value cache is on.
+	 * @throws IOException while parsing
+	 * @throws JParserException while parsing
+	 */
+	@Test
+	public void testValueCache() throws IOException, JParserException {
+		String [] statuses = {"active", "inactive", "closed"};
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < 1000; i++) {
+			sb.append(i == 0 ? "" : ",").append("{\"currency\" : \"USD\", \"status\" : \"").append(statuses[i % 3])
+				.append("\", \"name\" : \"record number ").append(i).append("\"}");
+		}
+		String doc = sb.append("]").toString();
+		JParser valueParser = new JParser();
+		assertEquals("", null, valueParser.getValueCacheStats());
+		valueParser.setValueCache(256, 12);
+		JNode root = valueParser.parse(doc);
+		assertEquals("", parser.parse(doc), root);
+		assertTrue("", root.getNode(0).getNode("currency").getValue() == root.getNode(999).getNode("currency").getValue());
+		assertTrue("", root.getNode(0).getNode("status").getValue() == root.getNode(3).getNode("status").getValue());
+		JCacheStats stats = valueParser.getValueCacheStats();
+		assertEquals("", 3000, stats.getLookups());
+		assertEquals("", 999 + 997, stats.getHits());
+		assertEquals("", 1996.0 / 3000, stats.getHitRatio(), 1e-9);
+		assertEquals("", 999 * 48 + 997 * 48, stats.getSavedBytes());
+		assertEquals("", 2997, valueParser.getKeyCacheStats().getHits());
+
+		JNode lazy = valueParser.parseLazy(doc);
+		assertEquals("", root, lazy);
+		assertTrue("", lazy.getNode(5).getNode("currency").getValue() == root.getNode(0).getNode("currency").getValue());
+		valueParser.setValueCache(0, 0);
+		assertEquals("", null, valueParser.getValueCacheStats());
+	}
+
+	/**
+	 * Number scanner gives the same types and values as original regex based parsing.
+	 * @throws IOException while parsing
+	 * @throws JParserException while parsing
+	 */
+	@Test
+	public void testValueParse() throws IOException, JParserException {
+		List<String> literals = new ArrayList<String>(Arrays.asList(
+				"0", "-0", "+5", "007", "2147483647", "2147483648", "-2147483648", "-2147483649",
+				"9223372036854775807", "-9223372036854775808", "1.5", "-0.0", "0.1", "8.41", "3.4028235e38", "3.5e38",
+				"1e-50", "1e400", "-1e400", "123456789.123456789", "1E5", "1e+5", "2.5E-3", ".5", "5.", "-.5",
+				"0.30000000000000004", "1.00000000000000000000001", "4.9e-324", "1.7976931348623157e308",
+				"12345678901234567", "0.000001234", "1e22", "1e23", "NaN", "Infinity", "true", "false", "null"));
+		Random random = new Random(7);
+		for (int i = 0; i < 2000; i++) {
+			literals.add(Long.toString(random.nextLong() >> random.nextInt(64)));
+			literals.add(Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20)));
+			literals.add((random.nextInt(2000000) - 1000000) + "." + random.nextInt(1000));
+		}
+		for (String literal : literals) {
+			Object expected = legacyValue(literal);
+			for (JNode root : new JNode [] {parser.parse("[" + literal + "]"),
+					parser.parse(new ByteArrayInputStream(("[" + literal + "]").getBytes(StandardCharsets.UTF_8))),
+					parser.parseLazy("[" + literal + "]")}) {
+				Object actual = root.getNode(0).getValue();
+				assertEquals(literal, expected, actual);
+				if (expected != null) {
+					assertEquals(literal, expected.getClass(), actual.getClass());
+				}
+			}
+		}
+		for (String wrong : new String [] {"1x", "-", "+", "1e", "1.2.3", "--1", "tru", "0x10"}) {
+			try {
+				parser.parse("[" + wrong + "]");
+				fail("wrong value is not detected: " + wrong);
+			} catch (JParserException e) {
+				assertEquals("", "Json syntax : wrong value '" + wrong + "'", e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Original parsing of literal value.
+	 * @param text literal
+	 * @return value
+	 */
+	private static Object legacyValue(final String text) {
+		switch (text) {
+		case "null":
+			return null;
+		case "true":
+		case "false":
+			return Boolean.valueOf(text);
+		default:
+			if (text.matches("^[\\-\\+]?\\d+$")) {
+				try {
+					return Integer.valueOf(text);
+				} catch (NumberFormatException e) {
+					return Long.valueOf(text);
+				}
+			}
+			Float fv = Float.valueOf(text);
+			if (fv.isInfinite()) {
+				return Double.valueOf(text);
+			}
+			return fv;
+		}
+	}
+
+	/**
+	 * Lazy tree is equal to the tree built by parser; untouched parts of document are not decoded.
+	 * @throws IOException while parsing
+	 * @throws JParserException while parsing
+	 */
+	@Test
+	public void testParseLazy() throws IOException, JParserException {
+		for (String fileName : fileList) {
+			JNode lazy = parser.parseLazy(new File(fileName));
+			JNode tree = parser.parse(new File(fileName));
+			assertEquals("failed: " + fileName, tree.toJson(), lazy.toJson());
+			assertEquals("failed: " + fileName, tree, parser.parseLazy(new File(fileName)));
+			assertEquals("failed: " + fileName, parser.parseLazy(new File(fileName)), tree);
+		}
+		assertEquals("", parser.parse(testDoc()), parser.parseLazy(testDoc()));
+
+		JNode lazy = parser.parseLazy("{\"good\" : {\"a\" : [1, 2.5, \"x\"]}, \"bad\" : {\"b\" : 1}}");
+		assertEquals("", JNodeType.OBJECT, lazy.getType());
+		JNode good = lazy.getNode("good").getNode("a");
+		assertEquals("", Float.valueOf(2.5f), good.getNode(1).getValue());
+		assertEquals("", "good", ((JInstrumentalNode) lazy.getNode("good")).getKey());
+		assertEquals("", lazy.getNode("good"), good.getParent());
+		// numbers and booleans of lazy array are kept without nodes
+		JArrayNode numbers = (JArrayNode) parser.parseLazy("{\"n\" : [3, 1, 4, 1, 5]}").getNode("n");
+		assertEquals("", JValueType.LONG, numbers.getPrimitiveType());
+		assertTrue("", Arrays.equals(new long[] {3, 1, 4, 1, 5}, numbers.getLongArray()));
+		assertTrue("", numbers.getLongArray() == numbers.getLongArray());
+		assertEquals("", JValueType.BOOLEAN, ((JArrayNode) parser.parseLazy("[true, false]")).getPrimitiveType());
+		assertEquals("", "[1,null,true]", parser.parseLazy("[1, null, true]").toJson());
+		// literals are checked while the index is built, as eager parser does
+		for (String[] wrong : new String[][] {
+			{"{\"good\" : {\"a\" : 1}, \"bad\" : {\"b\" : 1x}}", "1x"},
+			{"{\"a\":1,\"b\":1x,\"c\":3}", "1x"},
+			{"[1,1x,3]", "1x"},
+			{"[nul]", "nul"},
+			{"{\"b\":1x}", "1x"}
+		}) {
+			try {
+				parser.parseLazy(wrong[0]);
+				fail("wrong value is not detected in " + wrong[0]);
+			} catch (JParserException e) {
+				assertEquals(wrong[0], "Json syntax : wrong value '" + wrong[1] + "'", e.getMessage());
+			}
+		}
+
+		assertEquals("", Integer.valueOf(7), parser.parseLazy(" 7 ").getValue());
+		try {
+			parser.parseLazy("{\"a\" : 1, 2}");
+			fail("value without field name is not detected");
+		} catch (JParserException e) {
+			assertEquals("", "Json syntax : wrong format <DELIMITER,VALUE>", e.getMessage());
+		}
+	}
+
+	/**
+	 * Parse with application handler: sequence of callbacks and aggregation without tree.
+	 * @throws IOException while parsing
+	 * @throws JParserException while parsing
+	 */
+	@Test
+	public void testParseHandler() throws IOException, JParserException {
+		final StringBuilder sb = new StringBuilder();
+		parser.parse("{\"a\" : [1, 12345678901, 2.5, 1e400, \"two\", true, null], \"b\" : {}}", new JParseHandler() {
+			public void startObject() { sb.append("{ "); }
+			public void endObject() { sb.append("} "); }
+			public void startArray() { sb.append("[ "); }
+			public void endArray() { sb.append("] "); }
+			public void fieldName(final String name) { sb.append(name).append(": "); }
+			public void value(final String value) { sb.append("s:").append(value).append(' '); }
+			public void value(final long value) { sb.append("l:").append(value).append(' '); }
+			public void value(final double value) { sb.append("d:").append(value).append(' '); }
+			public void value(final boolean value) { sb.append("b:").append(value).append(' '); }
+			public void nullValue() { sb.append("null "); }
+		});
+		assertEquals("", "{ a: [ l:1 l:12345678901 d:2.5 d:Infinity s:two b:true null ] b: { } } ", sb.toString());
+
+		final double[] sum = new double[1];
+		parser.parse(new File("src/test/resources/book_store.json"), new JParseHandler() {
+			private boolean price;
+			public void startObject() { price = false; }
+			public void endObject() { price = false; }
+			public void startArray() { price = false; }
+			public void endArray() { price = false; }
+			public void fieldName(final String name) { price = "price".equals(name); }
+			public void value(final String value) { price = false; }
+			public void value(final long value) { value((double) value); }
+			public void value(final double value) {
+				if (price) {
+					sum[0] += value;
+				}
+				price = false;
+			}
+			public void value(final boolean value) { price = false; }
+			public void nullValue() { price = false; }
+		});
+		double expected = 0;
+		try (JPullParser pull = new JPullParser(new File("src/test/resources/book_store.json"))) {
+			while (pull.nextEvent() != null) {
+				if (pull.getEvent() == JParseEvent.FIELD_NAME && "price".equals(pull.getText())) {
+					pull.nextEvent();
+					expected += pull.getDouble();
+				}
+			}
+		}
+		assertTrue("", expected > 0);
+		assertEquals("", expected, sum[0], 0.001);
+
+		try {
+			parser.parse("{\"a\" : 1x}", new JTreeBuilder(null));
+			fail("wrong value is not detected");
+		} catch (JParserException e) {
+			assertEquals("", "Json syntax : wrong value '1x'", e.getMessage());
+		}
+
+		for (String[] keyless : new String[][] {
+			{"{\"a\" : 1, 2}", "<DELIMITER,VALUE>"},
+			{"{\"a\" : 1, \"x\"}", "<DELIMITER,VALUE_STRING>"},
+			{"{\"a\" : 1, {}}", "<DELIMITER,START_OBJECT>"},
+			{"{\"a\" : [], []}", "<DELIMITER,START_ARRAY>"}
+		}) {
+			sb.setLength(0);
+			try {
+				parser.parse(keyless[0], new JParseHandler() {
+					public void startObject() { sb.append("{ "); }
+					public void endObject() { sb.append("} "); }
+					public void startArray() { sb.append("[ "); }
+					public void endArray() { sb.append("] "); }
+					public void fieldName(final String name) { sb.append(name).append(": "); }
+					public void value(final String value) { sb.append("s:").append(value).append(' '); }
+					public void value(final long value) { sb.append("l:").append(value).append(' '); }
+					public void value(final double value) { sb.append("d:").append(value).append(' '); }
+					public void value(final boolean value) { sb.append("b:").append(value).append(' '); }
+					public void nullValue() { sb.append("null "); }
+				});
+				fail("member without field name is not detected in " + keyless[0]);
+			} catch (JParserException e) {
+				assertEquals(keyless[0], "Json syntax : wrong format " + keyless[1], e.getMessage());
+			}
+			assertTrue(keyless[0] + " " + sb, sb.toString().startsWith("{ a: "));
+			assertEquals(keyless[0] + " " + sb, 1, sb.toString().split(": ").length - 1);
+		}
+	}
+
+	/**
+	 * One parser is shared by many threads; windows of tokenizers and tables of
+	 * string caches are reused between calls in the same thread.
+	 * @throws Exception while parsing
+	 */
+	@Test
+	public void testSharedParser() throws Exception {
+		final JParser shared = new JParser();
+		shared.setValueCache(256, 16);
+		final String[] docs = new String[16];
+		final String[] expected = new String[docs.length];
+		for (int i = 0; i < docs.length; i++) {
+			StringBuilder sb = new StringBuilder("[");
+			for (int j = 0; j < 200 + i * 50; j++) {
+				sb.append(j == 0 ? "" : ",").append("{\"id\":").append(j).append(",\"doc\":\"d").append(i)
+						.append("\",\"v\":[").append(j * 0.5).append(",true]}");
+			}
+			docs[i] = sb.append(']').toString();
+			expected[i] = new JParser().parse(docs[i]).toJson();
+		}
+		final List<String> errors = new ArrayList<String>();
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			final int seed = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int k = 0; k < 100; k++) {
+							int i = (seed * 7 + k) % docs.length;
+							JNode node = (k % 2 == 0) ? shared.parse(docs[i])
+									: shared.parse(new ByteArrayInputStream(docs[i].getBytes(StandardCharsets.UTF_8)));
+							if (!expected[i].equals(node.toJson())) {
+								synchronized (errors) {
+									errors.add("document " + i);
+								}
+							}
+							JInstrumentalNode first = (JInstrumentalNode) node.getNode(0).getNode("doc");
+							JInstrumentalNode last = (JInstrumentalNode) node.getNode(node.childCount() - 1).getNode("doc");
+							if (first.getKey() != last.getKey() || first.getValue() != last.getValue()) {
+								synchronized (errors) {
+									errors.add("cached strings of document " + i);
+								}
+							}
+						}
+					} catch (IOException | JParserException e) {
+						synchronized (errors) {
+							errors.add(e.toString());
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals("", "[]", errors.toString());
+		// every record has three field names and one string value
+		long records = 0;
+		for (int t = 0; t < threads.length; t++) {
+			for (int k = 0; k < 100; k++) {
+				records += 200 + ((t * 7 + k) % docs.length) * 50;
+			}
+		}
+		assertEquals("", 3 * records, shared.getKeyCacheStats().getLookups());
+		assertEquals("", records, shared.getValueCacheStats().getLookups());
+
+		byte[] window = JBufferRecycler.takeBytes(JUtf8Tokenizer.DEFAULT_BUFFER_SIZE);
+		JBufferRecycler.release(window);
+		shared.parse(new ByteArrayInputStream(docs[0].getBytes(StandardCharsets.UTF_8)));
+		assertTrue("", window == JBufferRecycler.takeBytes(JUtf8Tokenizer.DEFAULT_BUFFER_SIZE));
+	}
+
 	/**
 	 *
 	 * @return String
@@ -18,12 +18,14 @@
 package com.ak.json.transform;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -33,6 +35,7 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.ak.json.JInstrumentalNode;
 import com.ak.json.JNode;
 import com.ak.json.JParserException;
 
@@ -125,6 +128,38 @@ public class JPathTest {
     }
   }
 
+  /**
+   * Test method for {@link com.ak.json.transform.JParser#parse(java.io.File, JProjection)}.
+   * Expressions give the same results on projected tree as on the whole one.
+   * @throws IOException while reading file.
+   * @throws JParserException while parsing test doc.
+   */
+  @Test
+  public void testProjection() throws IOException, JParserException {
+    File file = new File("src/test/resources/book_store.json");
+    for (String [] testEntry : fixture) {
+      JNode projected = parser.parse(file, new JProjection(testEntry[0]));
+      compareWithFile(JPath.jpath(testEntry[0], projected), "src/test/resources/jpath/" + testEntry[1]);
+    }
+    JProjection projection = new JProjection("/book-store/*/book/price", "/books/Martin Eden/amount");
+    assertEquals("", "{\"book-store\":[{\"book\":{\"price\":8.41}},null]}",
+        parser.parse("{\"book-store\":[{\"book\":{\"title\":\"t\",\"price\":8.41}}, 3],\"x\":{\"y\":[]}}",
+            projection).toJson());
+    assertEquals("", "{\"books\":{\"Martin Eden\":{\"amount\":[1,{}]}}}",
+        parser.parse("{\"books\":{\"Martin Eden\":{\"amount\":[1, {}],\"price\":2}}}", projection).toJson());
+    assertNull("", parser.parse("\"scalar root\"", projection));
+    String shifted = "{\"s\":[3,{\"x\":1},{\"b\":{\"p\":8}},[4]],\"t\":[5]}";
+    JNode full = JPath.jpath("/s/*/b/p", parser.parse(shifted)).get(0);
+    JNode kept = JPath.jpath("/s/*/b/p", parser.parse(shifted, new JProjection("/s/*/b/p"))).get(0);
+    assertEquals("", "[s, 2, b, p]", Arrays.toString(((JInstrumentalNode) full).getPath()));
+    assertEquals("", Arrays.toString(((JInstrumentalNode) full).getPath()),
+        Arrays.toString(((JInstrumentalNode) kept).getPath()));
+    assertEquals("", "{\"s\":[null,{},{\"b\":{\"p\":8}},[]]}",
+        parser.parse(shifted, new JProjection("/s/*/b/p")).toJson());
+    assertEquals("", Arrays.asList("price", "*"), JProjection.pushdown("/price/*/book[price ge 8]/title"));
+    assertEquals("", Arrays.asList(), JProjection.pushdown("/books/*[not(./author = preceding-sibling::./author)]"));
+  }
+
   /**
    *
    * @param nodes tested document
@@ -0,0 +1,347 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+//CSOFF: Magic
+package com.ak.json.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ak.json.JParseEvent;
+import com.ak.json.JParserException;
+
+/**
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+public class JPullParserTest {
+
+  /**
+   * Sequence of events of simple document.
+   * @throws IOException while parsing
+   * @throws JParserException while parsing
+   */
+  @Test
+  public void testEvents() throws IOException, JParserException {
+    JPullParser pull = new JPullParser("{\"a\" : [1, \"two\", {\"b\":null}], \"c\":2.5}");
+    StringBuilder sb = new StringBuilder();
+    JParseEvent event;
+    while ((event = pull.nextEvent()) != null) {
+      sb.append(event).append('(').append(pull.getText()).append(") ");
+    }
+    pull.close();
+    assertEquals("",
+        "START_OBJECT({) FIELD_NAME(a) START_ARRAY([) VALUE(1) VALUE_STRING(two) START_OBJECT({) FIELD_NAME(b) VALUE(null) "
+        + "END_OBJECT(}) END_ARRAY(]) FIELD_NAME(c) VALUE(2.5) END_OBJECT(}) ",
+        sb.toString());
+    assertNull("", pull.nextEvent());
+  }
+
+  /**
+   * Extract some fields from document, skipping subtrees that are not needed.
+   * @throws IOException while parsing
+   * @throws JParserException while parsing
+   */
+  @Test
+  public void testExtractFields() throws IOException, JParserException {
+    List<String> found = new ArrayList<String>();
+    try (JPullParser pull = new JPullParser(new File("src/test/resources/book_store.json"))) {
+      JParseEvent event;
+      while ((event = pull.nextEvent()) != null) {
+        if (event == JParseEvent.FIELD_NAME) {
+          switch (pull.getText()) {
+            case "author":
+              if (pull.nextEvent() == JParseEvent.START_OBJECT) {
+                pull.skipChildren();
+                assertEquals("", JParseEvent.END_OBJECT, pull.getEvent());
+              }
+              break;
+            case "price":
+              pull.nextEvent();
+              found.add("price=" + pull.getDouble());
+              break;
+            case "year":
+              pull.nextEvent();
+              found.add("year=" + pull.getLong());
+              break;
+            default:
+              break;
+          }
+        }
+      }
+    }
+    assertEquals("", "[price=8.41, year=2004, price=7.77, year=2013, price=17.45, year=2013]", found.subList(0, 6).toString());
+  }
+
+  /**
+   * Syntax errors are detected by pull parser.
+   * @throws IOException while parsing
+   */
+  @Test
+  public void testErrors() throws IOException {
+    for (String [] test : new String [] [] {
+      {"{\"a\":,\"b\":1}", "Json syntax : wrong position for ','"},
+      {"{\"a\":2,\"b\":1}}", "Unexpected symbol(s) near end of document '}}'."},
+      {"[1,2}", "Json syntax : wrong symbol } at position 5"},
+      {"[[{\"a\":true}]", "Json syntax : opened parentheses do not match closed parentheses. Difference: '{' = 0 '[' = 1"},
+      {"[\"a\":1]", "Json syntax : wrong format <START_ARRAY,FIELD_NAME>"},
+      {"{\"a\":1 \"b\":2}", "Json syntax : wrong format <VALUE,FIELD_NAME>"},
+      {"[1 2]", "Json syntax : wrong format <VALUE,VALUE>"},
+      {"{\"a\":1, 2}", "Json syntax : wrong format <DELIMITER,VALUE>"},
+      {"{\"a\":1, \"b\"}", "Json syntax : wrong format <DELIMITER,VALUE_STRING>"},
+      {"{\"a\":1, {}}", "Json syntax : wrong format <DELIMITER,START_OBJECT>"},
+      {"{\"a\":{}, [1]}", "Json syntax : wrong format <DELIMITER,START_ARRAY>"}
+    }) {
+      try (JPullParser pull = new JPullParser(test[0])) {
+        while (pull.nextEvent() != null) {
+          continue;
+        }
+        fail("error is not detected in " + test[0]);
+      } catch (JParserException e) {
+        assertEquals(test[0], test[1], e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Transition table requires ',' between members of object and elements of
+   * array, whether the value before the gap is number, string or literal, and
+   * rejects ',' before the end of container.
+   * @throws IOException while parsing
+   */
+  @Test
+  public void testMissingComma() throws IOException {
+    for (String [] test : new String [] [] {
+      {"{\"a\":1 \"b\":2}", "<VALUE,FIELD_NAME>"},
+      {"{\"a\":\"x\" \"b\":2}", "<VALUE_STRING,FIELD_NAME>"},
+      {"{\"a\":{\"b\":true \"c\":null}}", "<VALUE,FIELD_NAME>"},
+      {"{\"a\":1 ,\"b\":2 \"c\":3}", "<VALUE,FIELD_NAME>"},
+      {"{\"a\":1 {}}", "<VALUE,START_OBJECT>"},
+      {"[1 2]", "<VALUE,VALUE>"},
+      {"[\"x\" \"y\"]", "<VALUE_STRING,VALUE_STRING>"},
+      {"[1, [2 3]]", "<VALUE,VALUE>"},
+      {"[1 [2]]", "<VALUE,START_ARRAY>"},
+      {"[\"x\" {\"a\":1}]", "<VALUE_STRING,START_OBJECT>"},
+      {"[1,]", "<DELIMITER,END_ARRAY>"},
+      {"{\"a\":1,}", "<DELIMITER,END_OBJECT>"}
+    }) {
+      String text = test[0];
+      for (int i = 1; i <= 2; i++) {
+        try (JPullParser pull = (i == 1) ? new JPullParser(text)
+            : new JPullParser(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)))) {
+          while (pull.nextEvent() != null) {
+            continue;
+          }
+          fail("missing comma is not detected in " + text);
+        } catch (JParserException e) {
+          assertEquals(text, "Json syntax : wrong format " + test[1], e.getMessage());
+        }
+      }
+    }
+    for (Object [] test : new Object [] [] {
+      {"{\"a\":1 , \"b\":\"x\",\"c\":[1 ,2]}", 11},
+      {"[1,\"x\" ,true,[],{}]", 9}
+    }) {
+      String text = (String) test[0];
+      try (JPullParser pull = new JPullParser(text)) {
+        int count = 0;
+        while (pull.nextEvent() != null) {
+          count++;
+        }
+        assertEquals(text, test[1], count);
+      } catch (JParserException e) {
+        fail(text + " " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Syntax errors carry offset of the wrong token: index of char in text or of
+   * byte in UTF-8 input.
+   * @throws IOException while parsing
+   */
+  @Test
+  public void testErrorOffsets() throws IOException {
+    for (Object [] test : new Object [] [] {
+      {"{\"a\":,\"b\":1}", 5L, 5L},
+      {"[1,2}", 4L, 4L},
+      {"[\"a\":1]", 1L, 1L},
+      {"\"a\" : 1", 0L, 0L},
+      {"[[{\"a\":true}]", 13L, 13L},
+      {"{\"a\":2,\"b\":1}}", 13L, 13L},
+      {"[\"\u20ac\", }", 6L, 8L},
+      {"{\"\u20ac\" : [1, {\"b\" : 2,]}}", 20L, 22L},
+      {"[1, {\"s\" : [1, 2}]", 16L, 16L}
+    }) {
+      String text = (String) test[0];
+      for (int i = 1; i <= 2; i++) {
+        try (JPullParser pull = (i == 1) ? new JPullParser(text)
+            : new JPullParser(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)))) {
+          while (pull.nextEvent() != null) {
+            if (pull.getEvent() == JParseEvent.FIELD_NAME && pull.getText().equals("s")) {
+              pull.skipValue();
+            }
+          }
+          fail("error is not detected in " + text);
+        } catch (JParserException e) {
+          assertEquals(text + " " + e.getMessage(), test[i], e.getOffset());
+        }
+      }
+    }
+  }
+
+  /**
+   * Strings and white spaces scanned by words of 8 bytes give the same tokens
+   * as symbol by symbol scanning, wherever special symbols are placed.
+   * @throws IOException while parsing
+   * @throws JParserException while parsing
+   */
+  @Test
+  public void testWordScanning() throws IOException, JParserException {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < 40; i++) {
+      StringBuilder spaces = new StringBuilder();
+      for (int j = 0; j < i; j++) {
+        spaces.append(" \t\n\r".charAt(j % 4));
+      }
+      String padding = "abcdefghijklmnopqrstuvwxyz0123456789ABCD".substring(0, i);
+      sb.append(spaces).append("{\"").append(padding).append("\":\"")
+          .append(padding).append("\\\"q\\\\").append(spaces).append('\n')
+          .append(padding).append("\u00e9\u20ac").append(padding).append("\"}").append(spaces).append(',');
+    }
+    sb.append(" \b\f null]");
+    String text = sb.toString();
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+    direct.put(bytes).flip();
+    String expected = events(new JPullParser(text));
+    assertEquals("", expected, events(new JPullParser(new JUtf8Tokenizer(bytes, 0, bytes.length), 100)));
+    assertEquals("", expected, events(new JPullParser(new JBufferTokenizer(direct), 100)));
+    // stream returns few bytes per read, so words often cross end of the window
+    assertEquals("", expected, events(new JPullParser(new ByteArrayInputStream(bytes) {
+      @Override
+      public synchronized int read(final byte[] b, final int off, final int len) {
+        return super.read(b, off, Math.min(len, 7));
+      }
+    })));
+  }
+
+  /**
+   * Values skipped by tokenizer leave parser in the same state as skipping of
+   * their events, whatever brackets and escaped quotes are inside of strings.
+   * @throws IOException while parsing
+   * @throws JParserException while parsing
+   */
+  @Test
+  public void testSkipValue() throws IOException, JParserException {
+    StringBuilder sb = new StringBuilder("[");
+    StringBuilder expected = new StringBuilder("START_ARRAY([)\n");
+    for (int i = 0; i < 20; i++) {
+      String padding = "abcdefghijklmnopqrst".substring(0, i);
+      sb.append("{\"skip\" : {\"").append(padding).append("\" : \"x]}\\\"{[\", \"b\" : [[1, {}], \"\\\\\"]},")
+          .append(" \"keep\" : [").append(i).append(", \"two\"], \"s2\" : \"str\",")
+          .append(" \"arr\" : [{\"skip\" : []}, 3]},\n");
+      expected.append("START_OBJECT({)\nFIELD_NAME(skip)\nskipped END_OBJECT(})\nFIELD_NAME(keep)\nSTART_ARRAY([)\nVALUE(")
+          .append(i).append(")\nVALUE_STRING(two)\nEND_ARRAY(])\nFIELD_NAME(s2)\nskipped VALUE_STRING(str)\nFIELD_NAME(arr)\n")
+          .append("START_ARRAY([)\nSTART_OBJECT({)\nFIELD_NAME(skip)\nskipped END_ARRAY(])\nEND_OBJECT(})\n")
+          .append("VALUE(3)\nEND_ARRAY(])\nEND_OBJECT(})\n");
+    }
+    sb.append("{}]");
+    expected.append("START_OBJECT({)\nEND_OBJECT(})\nEND_ARRAY(])\n");
+    String text = sb.toString();
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+    direct.put(bytes).flip();
+    assertEquals("", expected.toString(), skipped(new JPullParser(text)));
+    assertEquals("", expected.toString(), skipped(new JPullParser(new JUtf8Tokenizer(bytes, 0, bytes.length), 100)));
+    assertEquals("", expected.toString(), skipped(new JPullParser(new JBufferTokenizer(direct), 100)));
+    assertEquals("", expected.toString(), skipped(new JPullParser(new ByteArrayInputStream(bytes) {
+      @Override
+      public synchronized int read(final byte[] b, final int off, final int len) {
+        return super.read(b, off, Math.min(len, 7));
+      }
+    })));
+    assertEquals("", expected.toString(), skipped(new JPullParser(new StringReader(text) {
+      @Override
+      public int read(final char[] b, final int off, final int len) throws IOException {
+        return super.read(b, off, Math.min(len, 5));
+      }
+    })));
+    for (String [] test : new String [] [] {
+      {"{\"s\":[1,2}}", "Json syntax : wrong symbol } at position 10"},
+      {"{\"s\":[1,[2]", "Json syntax : opened parentheses do not match closed parentheses. Difference: '{' = 1 '[' = 1"},
+      {"{\"s\":{\"a\":\"}\"}}}", "Unexpected symbol(s) near end of document '}}'."}
+    }) {
+      try {
+        skipped(new JPullParser(test[0]));
+        fail("error is not detected in " + test[0]);
+      } catch (JParserException e) {
+        assertEquals(test[0], test[1], e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Returns events of pull parser with their texts. Values of fields which
+   * names start with 's' are skipped.
+   * @param pull parser
+   * @return String
+   * @throws IOException while parsing
+   * @throws JParserException while parsing
+   */
+  private static String skipped(final JPullParser pull) throws IOException, JParserException {
+    StringBuilder sb = new StringBuilder();
+    JParseEvent event;
+    while ((event = pull.nextEvent()) != null) {
+      sb.append(event).append('(').append(pull.getText()).append(")\n");
+      if (event == JParseEvent.FIELD_NAME && pull.getText().startsWith("s")) {
+        pull.skipValue();
+        sb.append("skipped ").append(pull.getEvent()).append('(').append(pull.getText()).append(")\n");
+      }
+    }
+    pull.close();
+    return sb.toString();
+  }
+
+  /**
+   * Returns all events of pull parser with their texts.
+   * @param pull parser
+   * @return String
+   * @throws IOException while parsing
+   * @throws JParserException while parsing
+   */
+  private static String events(final JPullParser pull) throws IOException, JParserException {
+    StringBuilder sb = new StringBuilder();
+    JParseEvent event;
+    while ((event = pull.nextEvent()) != null) {
+      sb.append(event).append('(').append(pull.getText()).append(")\n");
+    }
+    pull.close();
+    return sb.toString();
+  }
+}
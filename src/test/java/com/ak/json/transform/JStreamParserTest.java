@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2014-2020 by krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+//CSOFF: Magic
+package com.ak.json.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ak.json.JInstrumentalNode;
+import com.ak.json.JNode;
+import com.ak.json.JParserException;
+
+/**
+ * @author krasnop@bellsouth.net (Alexei Krasnopolski)
+ *
+ */
+public class JStreamParserTest {
+  /** */
+  private JParser parser = new JParser();
+
+  /**
+   * Elements of top level array are read one by one.
+   * @throws IOException while parsing
+   * @throws JParserException while parsing
+   */
+  @Test
+  public void testTopLevelArray() throws IOException, JParserException {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < 1000; i++) {
+      sb.append(i == 0 ? "" : ",\n")
+        .append("{\"id\" : ").append(i).append(", \"name\" : \"record ").append(i)
+        .append("\", \"tags\" : [\"a\", \"b\"], \"nested\" : {\"x\" : [1, {\"y\" : null}]}}");
+    }
+    sb.append("]");
+    JNode tree = parser.parse(sb.toString());
+
+    List<JNode> streamed = new ArrayList<JNode>();
+    try (JStreamParser stream = new JStreamParser(
+        new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.UTF_8)), "/*")) {
+      JNode node;
+      while ((node = stream.nextNode()) != null) {
+        assertNull("", node.getParent());
+        streamed.add(node);
+      }
+    }
+    assertEquals("", tree.getChildren(), streamed);
+    assertEquals("", "999", ((JInstrumentalNode) streamed.get(999)).getKey());
+    assertEquals("", tree.getChildren().get(500).toJson(), streamed.get(500).toJson());
+  }
+
+  /**
+   * Nodes selected by path are the same as JPath selects from the tree.
+   * @throws IOException while parsing
+   * @throws JParserException while parsing
+   */
+  @Test
+  public void testPath() throws IOException, JParserException {
+    File file = new File("src/test/resources/book_store.json");
+    JNode tree = parser.parse(file);
+    for (String path : new String [] {"/book-store/*/book", "/book-store/1/book/author", "/book-store/*/book/price", "/books", "", "/nothing/*"}) {
+      List<JNode> streamed = new ArrayList<JNode>();
+      try (JStreamParser stream = new JStreamParser(file, path)) {
+        JNode node;
+        while ((node = stream.nextNode()) != null) {
+          streamed.add(node);
+        }
+      }
+      List<JNode> expected = path.isEmpty() ? Collections.singletonList(tree) : JPath.jpath(path, tree);
+      assertEquals(path, expected.size(), streamed.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertEquals(path, expected.get(i).toJson(), streamed.get(i).toJson());
+      }
+    }
+  }
+
+  /**
+   * Wrong path and wrong document.
+   * @throws IOException while parsing
+   */
+  @Test
+  public void testErrors() throws IOException {
+    try {
+      new JStreamParser("[]", "/book-store[price > 10]").close();
+      fail("wrong path is not detected");
+    } catch (IllegalArgumentException e) {
+      assertEquals("", "Path '/book-store[price > 10]' is not supported by stream parser: only names, indexes and '*' are allowed",
+          e.getMessage());
+    }
+    try (JStreamParser stream = new JStreamParser("[{\"a\":1}, {\"a\":2]]", "/*")) {
+      assertEquals("", "{\"a\":1}", stream.nextNode().toJson());
+      stream.nextNode();
+      fail("error is not detected");
+    } catch (JParserException e) {
+      assertEquals("", "Json syntax : wrong symbol ] after {\"a\":2}]", e.getMessage());
+    }
+  }
+}
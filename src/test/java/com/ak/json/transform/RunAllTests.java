@@ -26,7 +26,8 @@ import org.junit.runners.Suite.SuiteClasses;
  *
  */
 @RunWith(Suite.class)
-@SuiteClasses({JParserTest.class, JTransformerTest.class, JPathTest.class })
+@SuiteClasses({JParserTest.class, JTransformerTest.class, JPathTest.class, JPullParserTest.class,
+    JStreamParserTest.class, JLinesParserTest.class, JParallelParserTest.class, JFeedParserTest.class })
 public class RunAllTests {
 /** */
 }